@@ -274,4 +274,758 @@ public class TMTest {
         long v = tm.getOutputAsNumber();
         assertEquals(Long.MAX_VALUE, v);
     }
+
+    @Test
+    public void numericOutputMatchesStringConversion() {
+        java.util.Random rnd = new java.util.Random(361);
+        int[] digits = new int[5000];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = i == 0 ? 1 + rnd.nextInt(9) : rnd.nextInt(10);
+            sb.append(digits[i]);
+        }
+        tm.TM tm = new tm.TM();
+        tm.initializeTape(digits);
+        assertEquals(new java.math.BigInteger(sb.toString()), tm.getOutputAsBigInteger());
+
+        // symbols above 9 concatenate their decimal forms; binary and unary read 0/1 tapes
+        tm.initializeTape(new int[]{1, 12, 0, 3});
+        assertEquals(new java.math.BigInteger("11203"), tm.getOutputAsBigInteger());
+        assertEquals(11203, tm.getOutputAsNumber());
+        tm.initializeTape(new int[]{1, 0, 1, 1, 0, 1, 1, 1, 0, 1});
+        assertEquals(java.math.BigInteger.valueOf(0b1011011101), tm.getOutputAsBinary());
+        assertEquals(7, tm.getOutputAsUnary());
+    }
+
+    @Test
+    public void optimizerMergesEquivalentAndDropsUnreachableStates() {
+        // states 1 and 2 behave identically, state 4 is never entered, state 5 halts
+        int[][] rows = {
+            {1, 1, 'R', 2, 1, 'R'},
+            {3, 1, 'R', 5, 1, 'R'},
+            {3, 1, 'R', 5, 1, 'R'},
+            {5, 1, 'L', 5, 1, 'L'},
+            {0, 0, 'R', 0, 0, 'R'},
+        };
+        tm.TM template = new tm.TM();
+        for (int s = 0; s < 6; s++) {
+            tm.TMState st = new tm.TMState(s);
+            if (s == 5) st.setHalting(true);
+            else {
+                st.addTransition(0, rows[s][0], rows[s][1], (char) rows[s][2]);
+                st.addTransition(1, rows[s][3], rows[s][4], (char) rows[s][5]);
+            }
+            template.addState(st);
+        }
+
+        tm.TMOptimizer.Result r = tm.TMOptimizer.optimize(template, 6, 2);
+        assertEquals(2, r.statesRemoved);
+        assertEquals(4, r.nStates);
+        assertTrue(r.machine.getState(3).isHalting());
+
+        tm.TM original = template.cloneTemplate();
+        original.buildTransitionTable(6, 2);
+        original.initializeTape(new int[]{0, 1});
+        original.run();
+        tm.TM optimized = r.machine.cloneTemplate();
+        optimized.buildTransitionTable(r.nStates, 2);
+        optimized.initializeTape(new int[]{0, 1});
+        optimized.run();
+        assertEquals(original.getVisitedContentString(), optimized.getVisitedContentString());
+        assertEquals(original.getSumOfSymbols(), optimized.getSumOfSymbols());
+    }
+
+    @Test
+    public void traceReplayReconstructsConfigurations(@org.junit.jupiter.api.io.TempDir java.nio.file.Path dir) throws Exception {
+        // walk right over the 1s, append one more 1 and halt
+        tm.TM machine = new tm.TM();
+        tm.TMState s0 = new tm.TMState(0);
+        s0.addTransition(0, 1, 1, 'R');
+        s0.addTransition(1, 0, 1, 'R');
+        machine.addState(s0);
+        tm.TMState s1 = new tm.TMState(1);
+        s1.setHalting(true);
+        machine.addState(s1);
+        machine.buildTransitionTable(2, 2);
+        machine.initializeUnaryInput(3);
+        machine.setCurrentState(0);
+
+        java.io.File file = dir.resolve("run.trace").toFile();
+        try (tm.TMTrace trace = tm.TMTrace.create(file, machine, 2, 2)) {
+            machine.setTracer(trace);
+            machine.run();
+            assertEquals(4, trace.getSteps());
+        }
+
+        try (tm.TMTrace.Reader r = new tm.TMTrace.Reader(file)) {
+            tm.TMTrace.Replay replay = new tm.TMTrace.Replay(r);
+            assertTrue(replay.advanceTo(2));
+            assertEquals("step: 2\nstate: 0\nhead: 2\ntape: 111\n", replay.describe());
+            assertFalse(replay.advanceTo(10));
+            assertEquals("step: 4\nstate: 1\nhead: 4\ntape: " + machine.getVisitedContentString() + "\n", replay.describe());
+        }
+    }
+
+    @Test
+    public void tapeFileLoadsLikeTheInputLine(@org.junit.jupiter.api.io.TempDir java.nio.file.Path dir) throws Exception {
+        java.io.File digits = dir.resolve("tape.txt").toFile();
+        java.nio.file.Files.writeString(digits.toPath(), "0312\n21\n");
+        java.io.File binary = dir.resolve("tape.bin").toFile();
+        java.nio.file.Files.write(binary.toPath(), new byte[]{0, 3, 1, 2, 2, 1});
+
+        tm.TM expected = new tm.TM();
+        expected.initializeTape(new int[]{0, 3, 1, 2, 2, 1});
+        tm.TM fromDigits = new tm.TM();
+        fromDigits.initializeTape(digits, false);
+        tm.TM fromBinary = new tm.TM();
+        fromBinary.initializeTape(binary, true);
+
+        assertEquals("031221", expected.getVisitedContentString());
+        assertEquals(expected.getVisitedContentString(), fromDigits.getVisitedContentString());
+        assertEquals(expected.getVisitedContentString(), fromBinary.getVisitedContentString());
+        assertEquals(expected.getSumOfSymbols(), fromBinary.getSumOfSymbols());
+
+        // symbols outside the machine's alphabet are rejected while loading
+        tm.TM twoSymbols = unaryWalker(0);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> twoSymbols.initializeTape(binary, true));
+        assertTrue(e.getMessage().contains("symbol 3 at cell 1"));
+        assertThrows(IllegalArgumentException.class, () -> twoSymbols.initializeTape(digits, false, 3));
+        twoSymbols.initializeTape(binary, true, 4);
+
+        // the tape is sized to the input and grows as the machine walks off its end
+        java.io.File ones = dir.resolve("ones.txt").toFile();
+        java.nio.file.Files.writeString(ones.toPath(), "1".repeat(5000));
+        tm.TM walker = unaryWalker(0);
+        walker.initializeTape(ones, false);
+        walker.setCurrentState(0);
+        walker.run();
+        tm.TM reference = unaryWalker(5000);
+        reference.run();
+        assertEquals(reference.getVisitedLength(), walker.getVisitedLength());
+        assertEquals(5001, walker.getSumOfSymbols());
+
+        // multi-tape machines load tape 0 the same way: copy the 1s onto tape 1, then halt
+        String copier = "2\n1 2\n1,0,0,S,S\n1,0,1,S,S\n0,1,1,R,R\n0,1,1,R,R\n";
+        java.io.File copyFile = dir.resolve("copy.txt").toFile();
+        java.nio.file.Files.writeString(copyFile.toPath(), copier);
+        java.io.File copyLine = dir.resolve("copy-line.txt").toFile();
+        java.nio.file.Files.writeString(copyLine.toPath(), copier + "1".repeat(5000) + "\n");
+        String fromFile = comparable(tm.TMSimulator.report(copyFile, "--input-file=" + ones).toHuman());
+        assertTrue(fromFile.contains("tape 1 length: 5001, sum of symbols: 5000\n"), fromFile);
+        assertEquals(comparable(tm.TMSimulator.report(copyLine).toHuman()).replace("copy-line.txt", "copy.txt"), fromFile);
+        tm.TMReport rejected = tm.TMSimulator.report(copyFile, "--input-file=" + binary, "--input-format=binary");
+        assertTrue(rejected.toJson().contains("outside the machine's alphabet"), rejected.toJson());
+    }
+
+    @Test
+    public void traceDiffReportsTheFirstDivergingStep(@org.junit.jupiter.api.io.TempDir java.nio.file.Path dir) throws Exception {
+        // walkers over 3 and 5 ones read the same symbols for steps 0-2; at step 3 one reads a blank
+        java.io.File three = dir.resolve("three.trace").toFile();
+        java.io.File five = dir.resolve("five.trace").toFile();
+        java.io.File threeAgain = dir.resolve("three-again.trace").toFile();
+        for (Object[] run : new Object[][]{{three, 3}, {five, 5}, {threeAgain, 3}}) {
+            tm.TM machine = unaryWalker((Integer) run[1]);
+            try (tm.TMTrace trace = tm.TMTrace.create((java.io.File) run[0], machine, 2, 2)) {
+                machine.setTracer(trace);
+                machine.run();
+            }
+        }
+
+        String diff = tm.TMTraceTool.diff(three, five);
+        assertTrue(diff.startsWith("note: traces start from different machines or inputs\n"
+                + "first divergence at step 3\n"
+                + "three.trace: state 0 reading 0\n"
+                + "five.trace: state 0 reading 1\n"), diff);
+        assertTrue(diff.contains("-- three.trace before step 3\nstep: 3\nstate: 0\nhead: 3\n"), diff);
+        assertEquals("identical (4 steps)\n", tm.TMTraceTool.diff(three, threeAgain));
+    }
+
+    private static tm.TM unaryWalker(int ones) {
+        // walk right over the 1s, append one more 1 and halt
+        tm.TM machine = new tm.TM();
+        tm.TMState s0 = new tm.TMState(0);
+        s0.addTransition(0, 1, 1, 'R');
+        s0.addTransition(1, 0, 1, 'R');
+        machine.addState(s0);
+        tm.TMState s1 = new tm.TMState(1);
+        s1.setHalting(true);
+        machine.addState(s1);
+        machine.buildTransitionTable(2, 2);
+        machine.initializeUnaryInput(ones);
+        machine.setCurrentState(0);
+        return machine;
+    }
+
+    @Test
+    public void watcherRerunsOnlyTheChangedFileAndDropsStaleReports(@org.junit.jupiter.api.io.TempDir java.nio.file.Path dir) throws Exception {
+        java.nio.file.Path walk = dir.resolve("walk.txt");
+        java.nio.file.Files.writeString(walk, "2\n1\n1,1,R\n0,1,R\n11\n");
+        java.nio.file.Path edited = dir.resolve("edited.txt");
+        java.nio.file.Files.writeString(edited, LOOP_MACHINE);
+        java.util.List<tm.TMReport> reports = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        tm.TMReportSink sink = new tm.TMReportSink() {
+            @Override
+            public void write(tm.TMReport report) { reports.add(report); }
+
+            @Override
+            public void close() { }
+        };
+        tm.TMWatcher watcher = new tm.TMWatcher(new java.io.File[]{walk.toFile(), edited.toFile()}, new java.io.File[0], sink);
+        Thread watching = new Thread(() -> {
+            try {
+                watcher.watch();
+            } catch (InterruptedException | java.io.IOException e) {
+                // interrupted below to stop watching
+            }
+        }, "test-watch");
+        watching.setDaemon(true);
+        watching.start();
+        try {
+            assertTimeoutPreemptively(java.time.Duration.ofSeconds(30), () -> {
+                // walk.txt halts; the first version of edited.txt never does
+                while (reports.isEmpty()) Thread.sleep(10);
+                assertEquals("walk.txt", reports.get(0).getName());
+                Thread.sleep(200); // the endless run is under way
+                java.nio.file.Files.writeString(edited, "2\n1\n1,1,R\n0,1,R\n111\n");
+                while (reports.size() < 2) Thread.sleep(10);
+            });
+            Thread.sleep(300); // time for a stray report of the cancelled run to show up
+            synchronized (reports) {
+                // walk.txt was not re-run and the endless run left no report
+                assertEquals(2, reports.size(), reports.stream().map(tm.TMReport::toJson).collect(java.util.stream.Collectors.joining("\n")));
+                assertEquals("edited.txt", reports.get(1).getName());
+                assertEquals(tm.TMReport.Status.HALTED, reports.get(1).getStatus());
+                assertTrue(reports.get(1).toHuman().contains("output:\n11110\n"), reports.get(1).toHuman());
+            }
+            assertTrue(watching.isAlive());
+        } finally {
+            watching.interrupt();
+            watching.join(10_000);
+        }
+        assertFalse(watching.isAlive());
+    }
+
+    @Test
+    public void cancelStopsARunningMachine() throws Exception {
+        // writes 1s to the right forever
+        tm.TM machine = new tm.TM();
+        tm.TMState s0 = new tm.TMState(0);
+        s0.addTransition(0, 0, 1, 'R');
+        machine.addState(s0);
+        tm.TMState s1 = new tm.TMState(1);
+        s1.setHalting(true);
+        machine.addState(s1);
+        machine.buildTransitionTable(2, 2);
+        machine.initializeTape(new int[0]);
+        machine.setCurrentState(0);
+
+        java.util.concurrent.FutureTask<Void> run = new java.util.concurrent.FutureTask<>(machine::run, null);
+        new Thread(run).start();
+        Thread.sleep(50);
+        machine.cancel();
+        java.util.concurrent.ExecutionException e = assertThrows(java.util.concurrent.ExecutionException.class,
+                () -> run.get(10, java.util.concurrent.TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof java.util.concurrent.CancellationException);
+        assertFalse(machine.isHalted());
+    }
+
+    @Test
+    public void debuggerStepsBackwardsThroughCheckpoints() {
+        tm.TMDebugger dbg = new tm.TMDebugger(unaryWalker(50000), 1 << 20);
+        dbg.continueToHalt();
+        assertEquals(50001, dbg.getStep());
+        assertTrue(dbg.getCheckpointCount() > 1);
+        assertTrue(dbg.getCheckpointBytes() <= 1 << 20);
+
+        dbg.goTo(12345);
+        assertTrue(dbg.stepBack());
+        tm.TM fresh = unaryWalker(50000);
+        for (int i = 0; i < 12344; i++) fresh.step();
+        assertSameConfiguration(fresh, dbg);
+
+        dbg.goTo(0);
+        assertFalse(dbg.stepBack());
+    }
+
+    @Test
+    public void debuggerCopiesTheInputOnlyWhereTheMachineChangesIt() {
+        // a 2M-cell input is 8 MB of tape, well over the budget
+        tm.TMDebugger idle = new tm.TMDebugger(unaryWalker(2_000_000), 1 << 20);
+        assertTrue(idle.getCheckpointBytes() <= 1 << 20);
+
+        // erase the 1s from the left: every page the head crosses is saved once, about 800 KB here
+        tm.TMDebugger dbg = new tm.TMDebugger(unaryEraser(2_000_000), 1 << 20);
+        dbg.goTo(200_000);
+        assertTrue(dbg.getCheckpointBytes() <= 1 << 20);
+        dbg.goTo(1234);
+        assertTrue(dbg.stepBack());
+        tm.TM fresh = unaryEraser(2_000_000);
+        for (int i = 0; i < 1233; i++) fresh.step();
+        assertSameConfiguration(fresh, dbg);
+        dbg.goTo(0);
+        assertSameConfiguration(unaryEraser(2_000_000), dbg);
+        assertTrue(dbg.getCheckpointBytes() <= 1 << 20);
+    }
+
+    private static tm.TM unaryEraser(int ones) {
+        // overwrite the 1s with 0s and halt on the first blank
+        tm.TM machine = new tm.TM();
+        tm.TMState s0 = new tm.TMState(0);
+        s0.addTransition(0, 1, 1, 'R');
+        s0.addTransition(1, 0, 0, 'R');
+        machine.addState(s0);
+        tm.TMState s1 = new tm.TMState(1);
+        s1.setHalting(true);
+        machine.addState(s1);
+        machine.buildTransitionTable(2, 2);
+        machine.initializeUnaryInput(ones);
+        machine.setCurrentState(0);
+        return machine;
+    }
+
+    private static void assertSameConfiguration(tm.TM expected, tm.TMDebugger dbg) {
+        tm.TM actual = dbg.getMachine();
+        assertEquals(expected.getStepCount(), dbg.getStep());
+        assertEquals(expected.getCurrentState(), actual.getCurrentState());
+        assertEquals(expected.getHeadPosition(), actual.getHeadPosition());
+        assertEquals(expected.isHalted(), actual.isHalted());
+        assertEquals(expected.getVisitedContentString(), actual.getVisitedContentString());
+    }
+
+    @Test
+    public void ntmSearchFindsShallowestAcceptingBranch() {
+        // guess where "11" starts: state 0 either skips a 1 or commits to it, state 1 needs another 1
+        tm.NTM ntm = new tm.NTM();
+        tm.NTMState s0 = new tm.NTMState(0);
+        s0.addTransition(1, 0, 1, 'R');
+        s0.addTransition(1, 1, 1, 'R');
+        s0.addTransition(2, 0, 2, 'R');
+        tm.NTMState s1 = new tm.NTMState(1);
+        s1.addTransition(1, 2, 1, 'R');
+        tm.NTMState s2 = new tm.NTMState(2);
+        s2.setHalting(true);
+        ntm.addState(s0);
+        ntm.addState(s1);
+        ntm.addState(s2);
+        ntm.compile(3, 3);
+        assertEquals(2, s0.getTransitionCount(1));
+
+        java.util.concurrent.ForkJoinPool pool = java.util.concurrent.ForkJoinPool.commonPool();
+        tm.NTM.Result yes = ntm.search(new int[]{1, 2, 1, 2, 1, 1, 2}, 100, 1000, pool);
+        assertEquals(tm.NTM.Result.Status.ACCEPTED, yes.status);
+        assertEquals(6, yes.depth);
+        assertEquals("1212112", yes.getVisitedContentString());
+
+        tm.NTM.Result no = ntm.search(new int[]{1, 2, 1, 2, 1}, 100, 1000, pool);
+        assertEquals(tm.NTM.Result.Status.REJECTED, no.status);
+    }
+
+    @Test
+    public void generatedMachinesRunForTheirPredictedSteps() {
+        for (tm.TMGenerator.Pattern p : tm.TMGenerator.Pattern.values()) {
+            tm.TMGenerator.Machine small = tm.TMGenerator.generate(5, 3, p, 10_000, 1);
+            tm.TMGenerator.Machine big = tm.TMGenerator.generate(40, 5, p, 10_000, 2);
+            long expected = tm.TMGenerator.expectedSteps(p, small.inputLength);
+            assertTrue(Math.abs(expected - 10_000) < 1_000, p + " misses its target: " + expected);
+
+            tm.TM a = small.toTM();
+            a.run();
+            tm.TM b = big.toTM();
+            b.run();
+            // rings of state copies change the table, not the run
+            assertEquals(expected, a.getStepCount());
+            assertEquals(expected, b.getStepCount());
+            assertEquals(a.getVisitedLength(), b.getVisitedLength());
+
+            String[] lines = big.toText().split("\n");
+            assertEquals("40", lines[0]);
+            assertEquals("5", lines[1]);
+            assertEquals(2 + 39 * 6 + 1, lines.length);
+        }
+    }
+
+    @Test
+    public void twoTapeMachineDoublesInLinearSteps() {
+        // copy tape 0 to tape 1, rewind tape 1, append it to tape 0
+        tm.MTM machine = new tm.MTM(2);
+        for (int i = 0; i < 4; i++) {
+            tm.MTMState st = new tm.MTMState(i, 2, 2);
+            st.setHalting(i == 3);
+            machine.addState(st);
+        }
+        machine.getState(0).addTransition(new int[]{1, 0}, 0, new int[]{1, 1}, new char[]{'R', 'R'});
+        machine.getState(0).addTransition(new int[]{0, 0}, 1, new int[]{0, 0}, new char[]{'S', 'L'});
+        machine.getState(1).addTransition(new int[]{0, 1}, 1, new int[]{0, 1}, new char[]{'S', 'L'});
+        machine.getState(1).addTransition(new int[]{0, 0}, 2, new int[]{0, 0}, new char[]{'S', 'R'});
+        machine.getState(2).addTransition(new int[]{0, 1}, 2, new int[]{1, 1}, new char[]{'R', 'R'});
+        machine.compile(4, 2);
+
+        for (int n : new int[]{4, 400}) {
+            tm.MTM run = machine.cloneTemplate();
+            run.initializeUnaryInput(n);
+            run.setCurrentState(0);
+            run.run();
+            assertEquals(3L * n + 2, run.getStepCount());
+            assertEquals(2L * n, run.getSumOfSymbols(0));
+            assertEquals(n, run.getSumOfSymbols(1));
+        }
+
+        // single-tape states accept the tuple form with one tape
+        tm.TMState single = new tm.TMState(0);
+        single.addTransition(new int[]{1}, 2, new int[]{0}, new char[]{'L'});
+        assertEquals(2, single.getNextState(1));
+        assertEquals(1, single.getTapeCount());
+        assertThrows(UnsupportedOperationException.class,
+                () -> single.addTransition(new int[]{1, 1}, 2, new int[]{0, 0}, new char[]{'L', 'L'}));
+    }
+
+    @Test
+    public void enumeratorFindsKnownBusyBeaverValues() throws Exception {
+        tm.TMEnumerator.Result bb2 = tm.TMEnumerator.enumerate(2, 2, 100, 202, 2, 8);
+        assertEquals(6, bb2.bestSteps);
+        assertEquals(4, bb2.bestSigma);
+
+        tm.TMEnumerator.Result bb3 = tm.TMEnumerator.enumerate(3, 2, 100, 202, 2, 32);
+        assertEquals(21, bb3.bestSteps);
+        assertEquals(6, bb3.bestSigma);
+        assertEquals(bb3.getMachines(), tm.TMEnumerator.enumerate(3, 2, 100, 202, 1, 1).getMachines());
+    }
+
+    @Test
+    public void reportWriterKeepsOrderAcrossFlushes() throws Exception {
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        // a buffer smaller than the text forces several flushes per line
+        tm.TMReportWriter w = new tm.TMReportWriter(java.nio.channels.Channels.newChannel(bytes), 16);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            String line = "machine-" + i + ",halted," + (i * 7) + "\n";
+            w.write(line);
+            expected.append(line);
+        }
+        w.close();
+        assertEquals(expected.toString(), bytes.toString("UTF-8"));
+
+        bytes.reset();
+        tm.TMReportSink csv = tm.TMReportSink.forFormat("csv", new tm.TMReportWriter(java.nio.channels.Channels.newChannel(bytes), 1 << 10));
+        csv.close();
+        assertTrue(bytes.toString("UTF-8").startsWith("name,status,steps,"));
+        tm.TMReportWriter unused = new tm.TMReportWriter(java.nio.channels.Channels.newChannel(bytes), 16);
+        assertThrows(IllegalArgumentException.class, () -> tm.TMReportSink.forFormat("xml", unused));
+        unused.close();
+    }
+
+    @Test
+    public void reportsRenderAsJsonAndCsv(@org.junit.jupiter.api.io.TempDir java.nio.file.Path dir) throws Exception {
+        // a two-tape machine that writes 1 on both tapes, steps right and halts
+        java.io.File twoTape = dir.resolve("two.txt").toFile();
+        java.nio.file.Files.writeString(twoTape.toPath(), "2\n1 2\n1,0,0,S,S\n1,0,0,S,S\n1,1,1,R,R\n1,1,1,S,S\n1\n");
+        tm.TMReport r = tm.TMSimulator.report(twoTape);
+        assertTrue(r.toJson().matches("\\{\"name\":\"two.txt\",\"status\":\"halted\",\"steps\":1,\"output_length\":2,"
+                + "\"sum_of_symbols\":1,\"output\":\"10\",\"tapes\":\\[\\{\"length\":2,\"sum_of_symbols\":1\\}\\],"
+                + "\"parse_seconds\":[0-9.]+,\"run_seconds\":[0-9.]+\\}"), r.toJson());
+        assertTrue(r.toCsv().matches("two\\.txt,halted,1,2,1,[0-9.]+,[0-9.]+,,,"), r.toCsv());
+        assertTrue(r.toHuman().contains("tape 1 length: 2, sum of symbols: 1\n"));
+
+        // names with separators and quotes are escaped; errors keep a message even without one
+        java.io.File odd = dir.resolve("a,\"b\".txt").toFile();
+        tm.TMReport missing = tm.TMSimulator.report(odd);
+        assertTrue(missing.toJson().startsWith("{\"name\":\"a,\\\"b\\\".txt\",\"status\":\"error\",\"error\":"), missing.toJson());
+        assertTrue(missing.toCsv().startsWith("\"a,\"\"b\"\".txt\",error,,,,,,,,"), missing.toCsv());
+        tm.TMReport bare = tm.TMReport.error("x.txt", new NullPointerException());
+        assertEquals("{\"name\":\"x.txt\",\"status\":\"error\",\"error\":\"java.lang.NullPointerException\"}", bare.toJson());
+        assertEquals("x.txt,error,,,,,,,,java.lang.NullPointerException", bare.toCsv());
+
+        // workers send reports as JSON; reading one back gives the same report in every format
+        tm.TMReport numeric = tm.TMSimulator.report(new java.io.File("input/file0.txt"), "--numeric=unary");
+        java.io.File guess = dir.resolve("guess.txt").toFile();
+        java.nio.file.Files.writeString(guess.toPath(), "3\n1\n-\n1,1,R\n2,0,R\n-\n1\n");
+        tm.TMReport search = tm.TMSimulator.report(guess);
+        for (tm.TMReport original : new tm.TMReport[]{r, missing, bare, numeric, search}) {
+            tm.TMReport copy = tm.TMReport.fromJson(original.toJson());
+            assertEquals(original.toJson(), copy.toJson());
+            assertEquals(original.toCsv(), copy.toCsv());
+            assertEquals(original.toHuman(), copy.toHuman());
+        }
+    }
+
+    // command line of a worker JVM running the simulator classes under test
+    private static java.util.List<String> workerCommand() throws Exception {
+        String cp = new java.io.File(tm.TMSimulator.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        String javaBin = new java.io.File(new java.io.File(System.getProperty("java.home"), "bin"), "java").getPath();
+        return java.util.List.of(javaBin, "-cp", cp, "tm.TMSimulator", "--worker");
+    }
+
+    private static java.util.List<tm.TMReport> coordinate(tm.TMCoordinator c, java.io.File... inputs) throws Exception {
+        java.util.List<tm.TMReport> results = new java.util.ArrayList<>();
+        c.run(inputs, new tm.TMReportSink() {
+            @Override
+            public void write(tm.TMReport report) { results.add(report); }
+
+            @Override
+            public void close() { }
+        });
+        return results;
+    }
+
+    // the report as the run-test scripts compare it: no timing line, blank lines ignored
+    private static String comparable(String report) {
+        return report.replaceAll("(?m)^elapsed \\(s\\):.*\n", "").replaceAll("(?m)^\n", "");
+    }
+
+    @Test
+    public void coordinatorReportsInInputOrderAndForwardsErrors() throws Exception {
+        java.io.File f0 = new java.io.File("input/file0.txt");
+        java.io.File f2 = new java.io.File("input/file2.txt");
+        java.io.File missing = new java.io.File("input/no-such-machine.txt");
+        java.util.List<tm.TMReport> results = coordinate(new tm.TMCoordinator(2, workerCommand()), f0, missing, f2, f0);
+
+        assertEquals(4, results.size());
+        tm.TMReport.Status[] statuses = results.stream().map(tm.TMReport::getStatus).toArray(tm.TMReport.Status[]::new);
+        assertArrayEquals(new tm.TMReport.Status[]{tm.TMReport.Status.HALTED, tm.TMReport.Status.ERROR,
+                tm.TMReport.Status.HALTED, tm.TMReport.Status.HALTED}, statuses);
+        // the same report a single-process run produces, in every format
+        String expected0 = comparable(new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get("expected/file0.txt.out")), "UTF-8"));
+        String expected2 = comparable(new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get("expected/file2.txt.out")), "UTF-8") + "\n");
+        assertEquals(expected0, comparable(results.get(0).toHuman()));
+        assertEquals(expected2, comparable(results.get(2).toHuman()));
+        assertEquals(expected0, comparable(results.get(3).toHuman()));
+        assertTrue(results.get(1).toJson().contains("no-such-machine.txt"));
+        String local = tm.TMSimulator.report(f2).toJson();
+        assertEquals(local.replaceAll("\"(parse|run)_seconds\":[0-9.]+", ""),
+                results.get(2).toJson().replaceAll("\"(parse|run)_seconds\":[0-9.]+", ""));
+
+        // --format reaches the coordinator's reports through the sink
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        try (tm.TMReportSink csv = tm.TMReportSink.forFormat("csv",
+                new tm.TMReportWriter(java.nio.channels.Channels.newChannel(bytes), 1 << 10))) {
+            new tm.TMCoordinator(1, workerCommand()).run(new java.io.File[]{f0, missing}, csv);
+        }
+        String[] rows = bytes.toString("UTF-8").split("\n");
+        assertEquals(3, rows.length);
+        assertTrue(rows[1].startsWith("file0.txt,halted,"), rows[1]);
+        assertTrue(rows[2].startsWith("no-such-machine.txt,error,"), rows[2]);
+    }
+
+    @Test
+    public void coordinatorRestartsCrashedWorkersAndSurvivesBadCommands(@org.junit.jupiter.api.io.TempDir java.nio.file.Path dir) throws Exception {
+        java.io.File f0 = new java.io.File("input/file0.txt");
+
+        // the first worker process dies before answering; its replacement is a real worker
+        java.util.List<String> cmd = new java.util.ArrayList<>(java.util.List.of("sh", "-c",
+                "if mkdir \"$0\"/crashed 2>/dev/null; then exit 3; fi; exec \"$@\"", dir.toString()));
+        cmd.addAll(workerCommand());
+        java.util.List<tm.TMReport> results = coordinate(new tm.TMCoordinator(1, cmd), f0, f0);
+        assertEquals(tm.TMReport.Status.ERROR, results.get(0).getStatus());
+        assertTrue(results.get(0).toJson().contains("worker failed"));
+        assertTrue(results.get(1).toHuman().startsWith("file0.txt\noutput:\n11111\n"));
+
+        // no worker can be started: every file is reported instead of hanging
+        results = coordinate(new tm.TMCoordinator(2, java.util.List.of("/nonexistent/tm-worker")), f0, f0, f0);
+        assertEquals(3, results.size());
+        for (tm.TMReport r : results) {
+            assertEquals(tm.TMReport.Status.ERROR, r.getStatus());
+            assertTrue(r.toJson().contains("cannot start worker"));
+        }
+    }
+
+    // a machine that bounces between two cells forever
+    private static final String LOOP_MACHINE = "3\n1\n1,0,R\n1,1,R\n0,0,L\n0,1,L\n";
+
+    private static String machineRequest(String name, String text) {
+        return "MACHINE " + name + " " + text.getBytes(java.nio.charset.StandardCharsets.UTF_8).length + "\n" + text;
+    }
+
+    // a client that waits for its replies: SHUTDOWN ends this stream without hanging up, and its DONE is dropped
+    private static java.util.List<String[]> serve(tm.TMServer server, String requests) throws Exception {
+        java.util.List<String[]> replies = hangUp(server, requests + "SHUTDOWN\n");
+        replies.remove(replies.size() - 1);
+        return replies;
+    }
+
+    // a client that sends its requests and disconnects straight away
+    private static java.util.List<String[]> hangUp(tm.TMServer server, String requests) throws Exception {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        server.serveStream(new java.io.ByteArrayInputStream(requests.getBytes(java.nio.charset.StandardCharsets.UTF_8)), out);
+        return parseReplies(out.toByteArray());
+    }
+
+    // split a connection's reply into {kind, body} frames and {"DONE"} markers
+    private static java.util.List<String[]> parseReplies(byte[] reply) throws Exception {
+        java.io.DataInputStream in = new java.io.DataInputStream(new java.io.ByteArrayInputStream(reply));
+        java.util.List<String[]> replies = new java.util.ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b != '\n') { line.append((char) b); continue; }
+            String[] header = line.toString().split(" ");
+            line.setLength(0);
+            if (header[0].equals("DONE")) { replies.add(new String[]{"DONE"}); continue; }
+            byte[] body = new byte[Integer.parseInt(header[1])];
+            in.readFully(body);
+            replies.add(new String[]{header[0], new String(body, java.nio.charset.StandardCharsets.UTF_8)});
+        }
+        return replies;
+    }
+
+    @Test
+    public void serverAnswersInRequestOrderWithErrorReplies() throws Exception {
+        tm.TMServer server = new tm.TMServer(2);
+        java.util.List<String[]> replies = serve(server,
+                "FILE input/file0.txt\n"
+                + "FILE input/no-such-machine.txt\n"
+                + machineRequest("walk", "2\n1\n1,1,R\n0,1,R\n111\n")
+                + "RUN\n"
+                + "OPTION --max-steps=1000\n"
+                + machineRequest("loop", LOOP_MACHINE)
+                + "RUN\n");
+
+        assertEquals(6, replies.size());
+        assertEquals("OUT", replies.get(0)[0]);
+        assertTrue(replies.get(0)[1].startsWith("file0.txt\noutput:\n11111\n"));
+        assertEquals("ERR", replies.get(1)[0]);
+        assertTrue(replies.get(1)[1].contains("no-such-machine.txt"));
+        assertEquals("OUT", replies.get(2)[0]);
+        assertTrue(replies.get(2)[1].startsWith("walk\noutput:\n11110\n"));
+        assertEquals("DONE", replies.get(3)[0]);
+        assertEquals("ERR", replies.get(4)[0]);
+        assertTrue(replies.get(4)[1].contains("step limit of 1000 reached"));
+        assertEquals("DONE", replies.get(5)[0]);
+    }
+
+    @Test
+    public void serverCancelsRunsOfAClosedConnection() throws Exception {
+        tm.TMServer server = new tm.TMServer(1);
+        // the client queues a machine that never halts and disconnects without waiting for it
+        hangUp(server, machineRequest("loop", LOOP_MACHINE));
+        // the only worker thread must be free again for the next client
+        java.util.List<String[]> replies = assertTimeoutPreemptively(java.time.Duration.ofSeconds(30),
+                () -> serve(server, "FILE input/file0.txt\nRUN\n"));
+        assertEquals("OUT", replies.get(0)[0]);
+        assertEquals("DONE", replies.get(1)[0]);
+    }
+
+    @Test
+    public void serverCancelsARunWhoseClientHangsUpWhileWaiting() throws Exception {
+        tm.TMServer server = new tm.TMServer(1);
+        java.io.PipedOutputStream client = new java.io.PipedOutputStream();
+        java.io.PipedInputStream in = new java.io.PipedInputStream(client);
+        java.util.concurrent.CompletableFuture<Void> served = java.util.concurrent.CompletableFuture.runAsync(() -> {
+            try {
+                server.serveStream(in, new java.io.ByteArrayOutputStream());
+            } catch (Exception e) {
+                throw new java.util.concurrent.CompletionException(e);
+            }
+        });
+        client.write((machineRequest("loop", LOOP_MACHINE) + "RUN\n").getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        client.flush();
+        Thread.sleep(200); // let the server start waiting on the run
+        assertFalse(served.isDone());
+        client.close();
+
+        assertTimeoutPreemptively(java.time.Duration.ofSeconds(30), () -> {
+            served.get();
+            java.util.List<String[]> replies = serve(server, "FILE input/file0.txt\nRUN\n");
+            assertEquals("OUT", replies.get(0)[0]);
+        });
+    }
+
+    @Test
+    public void multiTapeRunsCanBeCancelledAndRejectUnsupportedOptions() throws Exception {
+        // two tapes, every read tuple keeps state 0 and leaves both heads in place
+        String spin = "2\n1 2\n0,0,0,S,S\n0,0,0,S,S\n0,0,0,S,S\n0,0,0,S,S\n";
+        tm.TMServer server = new tm.TMServer(1);
+        String[][] cases = {
+                {"--max-steps=500", "step limit of 500 reached"},
+                {"--numeric=decimal", "--numeric does not support multi-tape machines"},
+                {"--optimize", "--optimize does not support multi-tape machines"},
+                {"--no-table", "--no-table does not support multi-tape machines"},
+        };
+        for (String[] c : cases) {
+            String[] reply = serve(server, "OPTION " + c[0] + "\n" + machineRequest("spin", spin) + "RUN\n").get(0);
+            assertEquals("ERR", reply[0]);
+            assertTrue(reply[1].contains(c[1]), reply[1]);
+        }
+
+        // an unbounded run is cancelled when its client disconnects, freeing the only worker
+        hangUp(server, machineRequest("spin", spin));
+        java.util.List<String[]> replies = assertTimeoutPreemptively(java.time.Duration.ofSeconds(30),
+                () -> serve(server, "FILE input/file0.txt\nRUN\n"));
+        assertEquals("OUT", replies.get(0)[0]);
+    }
+
+    // states 0..depth-1 each lead to the next with the given number of alternatives; the last state accepts
+    private static tm.NTM chainNtm(int depth, int alternatives) {
+        tm.NTM ntm = new tm.NTM();
+        for (int s = 0; s < depth; s++) {
+            tm.NTMState st = new tm.NTMState(s);
+            for (int sym = 0; sym < 2; sym++) {
+                for (int k = 0; k < alternatives; k++) {
+                    // cycles through (1, L), (1, R), (0, R), (0, L)
+                    st.addTransition(sym, s + 1, k % 4 < 2 ? 1 : 0, k % 4 == 1 || k % 4 == 2 ? 'R' : 'L');
+                }
+            }
+            ntm.addState(st);
+        }
+        tm.NTMState accept = new tm.NTMState(depth);
+        accept.setHalting(true);
+        ntm.addState(accept);
+        ntm.compile(depth + 1, 2);
+        return ntm;
+    }
+
+    private static void assertSearchIsDeterministic(tm.NTM ntm) {
+        java.util.concurrent.ForkJoinPool one = new java.util.concurrent.ForkJoinPool(1);
+        java.util.concurrent.ForkJoinPool four = new java.util.concurrent.ForkJoinPool(4);
+        try {
+            tm.NTM.Result expected = ntm.search(new int[0], 100, 1_000_000, one);
+            assertEquals(tm.NTM.Result.Status.ACCEPTED, expected.status);
+            for (int run = 0; run < 20; run++) {
+                tm.NTM.Result r = ntm.search(new int[0], 100, 1_000_000, four);
+                assertEquals(expected.depth, r.depth);
+                assertEquals(expected.explored, r.explored);
+                assertEquals(expected.getVisitedContentString(), r.getVisitedContentString());
+                assertEquals(expected.getVisitedLength(), r.getVisitedLength());
+            }
+        } finally {
+            one.shutdown();
+            four.shutdown();
+        }
+    }
+
+    @Test
+    public void ntmSearchResultDoesNotDependOnThreads() throws Exception {
+        // states 0..9 each step right or left writing 1, or right writing 0; state 10 accepts.
+        // Many branches meet in the same configuration with different visited ranges.
+        assertSearchIsDeterministic(chainNtm(10, 3));
+
+        // More alternatives for one (state, symbol) than there are (state, symbol) pairs.
+        // Both branches of state 0 reach state 2 with the head on cell 0: the left branch's 13th
+        // alternative and the right branch's first. The left branch is earlier in frontier order,
+        // so its copy survives and the accepting configuration never visited cell -1.
+        tm.NTM wide = new tm.NTM();
+        tm.NTMState s0 = new tm.NTMState(0);
+        s0.addTransition(0, 1, 1, 'R');
+        s0.addTransition(0, 1, 1, 'L');
+        tm.NTMState s1 = new tm.NTMState(1);
+        s1.addTransition(0, 2, 0, 'R');
+        for (int k = 0; k < 11; k++) s1.addTransition(0, 4, 0, 'R');
+        s1.addTransition(0, 2, 0, 'L');
+        tm.NTMState s2 = new tm.NTMState(2);
+        s2.addTransition(1, 3, 1, 'R');
+        tm.NTMState s3 = new tm.NTMState(3);
+        s3.setHalting(true);
+        for (tm.NTMState st : new tm.NTMState[]{s0, s1, s2, s3, new tm.NTMState(4)}) wide.addState(st);
+        wide.compile(5, 2);
+        tm.NTM.Result r = wide.search(new int[0], 100, 1000, java.util.concurrent.ForkJoinPool.commonPool());
+        assertEquals(tm.NTM.Result.Status.ACCEPTED, r.status);
+        assertEquals(3, r.depth);
+        assertEquals(2, r.getVisitedLength());
+        assertSearchIsDeterministic(wide);
+
+        // "-" alone (no "|" anywhere) still marks a nondeterministic machine
+        java.util.List<String[]> replies = serve(new tm.TMServer(1),
+                machineRequest("dash", "3\n1\n-\n1,1,R\n2,0,R\n-\n1\n") + "RUN\n");
+        assertEquals("OUT", replies.get(0)[0], replies.get(0)[1]);
+        assertTrue(replies.get(0)[1].contains("result: accepted\ndepth: 2\n"));
+    }
 }
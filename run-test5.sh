@@ -18,7 +18,12 @@ fi
 echo "Running simulator on $F"
 B=$(basename "$F")
 OUT="output/${B}.out"
-java -cp . tm.TMSimulator "$F" > "$OUT.tmp" 2>&1 || true
+# with TM_SERVER set (see tm-server.sh), hand the run to the warm daemon instead
+if [ -n "${TM_SERVER:-}" ]; then
+    java -cp . tm.TMClient --server="$TM_SERVER" "$F" > "$OUT.tmp" 2>&1 || true
+else
+    java -cp . tm.TMSimulator "$F" > "$OUT.tmp" 2>&1 || true
+fi
 # print timing line (so user sees elapsed time in terminal)
 grep '^elapsed (s):' "$OUT.tmp" || true
 # remove timing line so canonical comparison remains unchanged
@@ -0,0 +1,21 @@
+#!/bin/bash
+set -euo pipefail
+
+# tm-server.sh
+# Builds the simulator into a jar (the run-test scripts delete every *.class
+# file under the project on exit, so loose classes would vanish under a
+# running server) and starts the long-lived TM server. Point the test
+# scripts at it with:
+#   TM_SERVER=7361 ./run-all-tests.sh
+# Stop it with: java -cp .tm-server/tm.jar tm.TMClient --server=7361 --shutdown
+
+ADDR="${1:-7361}"
+DIR=".tm-server"
+CLASSES=$(mktemp -d)
+trap 'rm -rf "$CLASSES"' EXIT
+
+mkdir -p "$DIR"
+javac -d "$CLASSES" tm/*.java || { echo "Compilation failed" >&2; exit 1; }
+jar cf "$DIR/tm.jar" -C "$CLASSES" .
+
+java -cp "$DIR/tm.jar" tm.TMSimulator --server="$ADDR"
@@ -0,0 +1,288 @@
+package tm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * k-tape deterministic Turing Machine. States ({@link MTMState}, or any
+ * {@link TMStateInterface} with the tuple form of addTransition) are
+ * compiled into flat tables indexed by
+ * {@code state * symbolsPerTape^k + packed read tuple}, so a step is one
+ * table row no matter how many tapes there are.
+ *
+ * The tapes live in a {@link TapeBank}: the per-tape head, origin and
+ * visited range are parallel int arrays rather than k tape objects, so one
+ * step walks the same few arrays for every head. Tape 0 holds the input and
+ * the output; the others start blank. Heads may stay put ('S').
+ */
+public class MTM {
+
+    /** The tapes of one run, stored as parallel per-tape arrays. */
+    static final class TapeBank {
+        final int[][] cells;
+        final int[] origin;     // array index of logical cell 0
+        final int[] head;
+        final int[] minVisited;
+        final int[] maxVisited;
+        final int blank;
+
+        TapeBank(int tapes, int blank) {
+            this.blank = blank;
+            cells = new int[tapes][];
+            origin = new int[tapes];
+            head = new int[tapes];
+            minVisited = new int[tapes];
+            maxVisited = new int[tapes];
+            for (int t = 0; t < tapes; t++) load(t, 0);
+        }
+
+        /** Reset tape t to blank with room for n input cells; returns the array offset of cell 0. */
+        int load(int t, int n) {
+            int at = allocate(t, n);
+            loaded(t, n);
+            return at;
+        }
+
+        // n cells plus a little blank room on both sides, as TM does; the tape grows on demand
+        int allocate(int t, int n) {
+            int cap = (int) Math.min(n + Math.max(64L, n / 4), Integer.MAX_VALUE - 8);
+            cells[t] = new int[cap];
+            if (blank != 0) Arrays.fill(cells[t], blank);
+            origin[t] = (cap - n) / 2;
+            return origin[t];
+        }
+
+        // head on cell 0 and the n input cells counted as visited
+        void loaded(int t, int n) {
+            head[t] = 0;
+            minVisited[t] = n > 0 ? 0 : Integer.MAX_VALUE;
+            maxVisited[t] = n > 0 ? n - 1 : Integer.MIN_VALUE;
+        }
+
+        void visit(int t) {
+            int h = head[t];
+            if (h < minVisited[t]) minVisited[t] = h;
+            if (h > maxVisited[t]) maxVisited[t] = h;
+        }
+
+        /** Double tape t's array, keeping the used part centred. */
+        void grow(int t) {
+            int[] old = cells[t];
+            int cap = (int) Math.min(old.length * 2L, Integer.MAX_VALUE - 8);
+            if (cap == old.length) throw new IllegalStateException("tape " + t + " exceeds the maximum array size");
+            int[] grown = new int[cap];
+            if (blank != 0) Arrays.fill(grown, blank);
+            int shift = (cap - old.length) / 2;
+            System.arraycopy(old, 0, grown, shift, old.length);
+            cells[t] = grown;
+            origin[t] += shift;
+        }
+
+        int cell(int t, int logical) {
+            int ai = origin[t] + logical;
+            return ai < 0 || ai >= cells[t].length ? blank : cells[t][ai];
+        }
+    }
+
+    private final Map<Integer, TMStateInterface> states = new HashMap<>();
+    private final int tapes;
+    private int blankSymbol = 0;
+
+    // compiled tables, shared read-only between a template and its clones
+    private int symbolsPerTape = 0;
+    private int rowsPerState = 0;
+    private int[] nextStates = null; // [row], -1 = no transition
+    private int[] writes = null;     // [row * tapes + t]
+    private byte[] moves = null;     // [row * tapes + t]: -1 left, +1 right, 0 stay
+    private boolean[] haltingStates = null;
+
+    private TapeBank bank;
+    private int currentState = 0;
+    private boolean halted = false;
+    private long stepCount = 0;
+    // set from another thread by cancel(); run() polls it every CANCEL_CHECK_INTERVAL steps
+    private volatile boolean cancelled = false;
+    private static final int CANCEL_CHECK_INTERVAL = 1 << 16;
+    // run() stops with CancellationException after this many steps; 0 = no limit
+    private long maxSteps = 0;
+
+    public MTM(int tapes) {
+        if (tapes < 1) throw new IllegalArgumentException("a machine needs at least one tape");
+        this.tapes = tapes;
+    }
+
+    public int getTapeCount() { return tapes; }
+
+    public void addState(TMStateInterface state) { states.put(state.getId(), state); }
+
+    public TMStateInterface getState(int stateId) { return states.get(stateId); }
+
+    public void setBlankSymbol(int blankSymbol) { this.blankSymbol = blankSymbol; }
+
+    /** Flatten the states into the transition tables; symbols on every tape are 0..symbolsPerTape-1. */
+    public void compile(int nStates, int symbolsPerTape) {
+        long rows = 1;
+        for (int t = 0; t < tapes; t++) rows *= symbolsPerTape;
+        if (rows * nStates * tapes > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("transition table too large");
+        this.symbolsPerTape = symbolsPerTape;
+        this.rowsPerState = (int) rows;
+        nextStates = new int[nStates * rowsPerState];
+        writes = new int[nStates * rowsPerState * tapes];
+        moves = new byte[nStates * rowsPerState * tapes];
+        haltingStates = new boolean[nStates];
+        Arrays.fill(nextStates, -1);
+        for (int s = 0; s < nStates; s++) {
+            TMStateInterface st = states.get(s);
+            haltingStates[s] = st != null && st.isHalting();
+            if (st == null || haltingStates[s]) continue;
+            for (int idx = 0; idx < rowsPerState; idx++) {
+                if (!st.hasTransition(idx)) continue;
+                int next = st.getNextState(idx);
+                if (next < 0 || next >= nStates) throw new IllegalArgumentException("state " + s + " moves to unknown state " + next);
+                int row = s * rowsPerState + idx;
+                nextStates[row] = next;
+                for (int t = 0; t < tapes; t++) {
+                    int w = st instanceof MTMState ? ((MTMState) st).getWriteSymbol(idx, t) : st.getWriteSymbol(idx);
+                    char d = st instanceof MTMState ? ((MTMState) st).getDirection(idx, t) : st.getDirection(idx);
+                    writes[row * tapes + t] = w;
+                    moves[row * tapes + t] = (byte) (d == 'L' ? -1 : d == 'R' ? 1 : 0);
+                }
+            }
+        }
+    }
+
+    /** A fresh machine sharing this one's compiled tables, with blank tapes. */
+    public MTM cloneTemplate() {
+        MTM copy = new MTM(tapes);
+        copy.states.putAll(states);
+        copy.blankSymbol = blankSymbol;
+        copy.symbolsPerTape = symbolsPerTape;
+        copy.rowsPerState = rowsPerState;
+        copy.nextStates = nextStates;
+        copy.writes = writes;
+        copy.moves = moves;
+        copy.haltingStates = haltingStates;
+        return copy;
+    }
+
+    /** Put input on tape 0 (head on its first cell) and blank the other tapes. */
+    public void initializeTape(int[] input) {
+        int n = input == null ? 0 : input.length;
+        bank = new TapeBank(tapes, blankSymbol);
+        int at = bank.load(0, n);
+        if (n > 0) System.arraycopy(input, 0, bank.cells[0], at, n);
+        halted = false;
+        stepCount = 0;
+    }
+
+    /** Put a digit or binary tape file on tape 0, decoding it directly into the tape array. */
+    public void initializeTape(java.io.File inputFile, boolean binary) throws java.io.IOException {
+        initializeTape(inputFile, binary, symbolsPerTape);
+    }
+
+    /**
+     * As above, rejecting cells at or above symbols (the alphabet size, blank
+     * included) with IllegalArgumentException; 0 accepts any symbol.
+     */
+    public void initializeTape(java.io.File inputFile, boolean binary, int symbols) throws java.io.IOException {
+        bank = new TapeBank(tapes, blankSymbol);
+        int at = bank.allocate(0, TMTapeFile.maxCells(inputFile));
+        int n = TMTapeFile.decode(inputFile, binary, bank.cells[0], at, symbols);
+        bank.loaded(0, n);
+        halted = false;
+        stepCount = 0;
+    }
+
+    /** Put ones 1s on tape 0 and blank the other tapes. */
+    public void initializeUnaryInput(int ones) {
+        int n = Math.max(0, ones);
+        bank = new TapeBank(tapes, blankSymbol);
+        int at = bank.load(0, n);
+        Arrays.fill(bank.cells[0], at, at + n, 1);
+        halted = false;
+        stepCount = 0;
+    }
+
+    public void setCurrentState(int stateId) { currentState = stateId; }
+
+    public int getCurrentState() { return currentState; }
+
+    public boolean isHalted() { return halted; }
+
+    public long getStepCount() { return stepCount; }
+
+    public int getHeadPosition(int tape) { return bank.head[tape]; }
+
+    /** Execute one transition on all tapes. */
+    public void step() {
+        if (halted) return;
+        if (currentState < 0 || currentState >= haltingStates.length || haltingStates[currentState]) { halted = true; return; }
+        final TapeBank b = bank;
+        final int[][] cells = b.cells;
+        final int[] origin = b.origin;
+        final int[] head = b.head;
+        int idx = 0;
+        for (int t = 0; t < tapes; t++) {
+            b.visit(t);
+            int s = cells[t][origin[t] + head[t]];
+            if (s < 0 || s >= symbolsPerTape) { halted = true; return; }
+            idx = idx * symbolsPerTape + s;
+        }
+        int row = currentState * rowsPerState + idx;
+        int next = nextStates[row];
+        if (next < 0) { halted = true; return; }
+        stepCount++;
+
+        int base = row * tapes;
+        for (int t = 0; t < tapes; t++) {
+            cells[t][origin[t] + head[t]] = writes[base + t];
+            int ai = origin[t] + (head[t] += moves[base + t]);
+            if (ai < 0 || ai >= cells[t].length) b.grow(t);
+            b.visit(t);
+        }
+        currentState = next;
+        if (haltingStates[next]) halted = true;
+    }
+
+    /** Run until the machine halts; throws CancellationException after cancel(). */
+    public void run() {
+        while (!halted) {
+            int chunk = CANCEL_CHECK_INTERVAL;
+            if (maxSteps > 0) {
+                if (stepCount >= maxSteps) throw new CancellationException("step limit of " + maxSteps + " reached");
+                chunk = (int) Math.min(chunk, maxSteps - stepCount);
+            }
+            for (int i = 0; i < chunk && !halted; i++) step();
+            if (cancelled) throw new CancellationException("run cancelled after " + stepCount + " steps");
+        }
+    }
+
+    /** Ask a run() in progress on another thread to stop. */
+    public void cancel() { cancelled = true; }
+
+    /** Limit run() to n steps (0 = no limit); a machine still running then fails with CancellationException. */
+    public void setMaxSteps(long n) { maxSteps = Math.max(0, n); }
+
+    /** Visited content of one tape, leftmost to rightmost visited cell. */
+    public String getVisitedContentString(int tape) {
+        if (bank.minVisited[tape] == Integer.MAX_VALUE) return "";
+        StringBuilder sb = new StringBuilder();
+        for (int i = bank.minVisited[tape]; i <= bank.maxVisited[tape]; i++) sb.append(Math.max(0, bank.cell(tape, i)));
+        return sb.toString();
+    }
+
+    public int getVisitedLength(int tape) {
+        if (bank.minVisited[tape] == Integer.MAX_VALUE) return 0;
+        return bank.maxVisited[tape] - bank.minVisited[tape] + 1;
+    }
+
+    /** Sum of the non-blank symbols on one tape. */
+    public long getSumOfSymbols(int tape) {
+        long sum = 0;
+        for (int v : bank.cells[tape]) if (v != blankSymbol) sum += v;
+        return sum;
+    }
+
+}
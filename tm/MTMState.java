@@ -0,0 +1,100 @@
+package tm;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * State of a k-tape Turing Machine. Transitions are keyed by the tuple of
+ * symbols under the k heads, packed into one index as a mixed-radix number
+ * (tape 0 is the most significant digit, each digit in 0..symbolsPerTape-1).
+ * The single-symbol methods of {@link TMStateInterface} take that packed
+ * index as the read symbol and report tape 0's write and direction.
+ */
+public class MTMState implements TMStateInterface {
+
+    private int id;
+    private boolean halting = false;
+    private final int tapes;
+    private final int symbolsPerTape;
+
+    // packed read index -> {next, write_0..write_k-1, dir_0..dir_k-1}
+    private final Map<Integer, int[]> transitions = new HashMap<>();
+
+    public MTMState(int id, int tapes, int symbolsPerTape) {
+        this.id = id;
+        this.tapes = tapes;
+        this.symbolsPerTape = symbolsPerTape;
+    }
+
+    @Override
+    public int getId() { return id; }
+
+    @Override
+    public void setId(int id) { this.id = id; }
+
+    @Override
+    public boolean isHalting() { return halting; }
+
+    @Override
+    public void setHalting(boolean halting) { this.halting = halting; }
+
+    @Override
+    public int getTapeCount() { return tapes; }
+
+    /** Mixed-radix index of a tuple of read symbols. */
+    public int index(int[] readSymbols) {
+        if (readSymbols.length != tapes) throw new IllegalArgumentException("expected " + tapes + " read symbols, got " + readSymbols.length);
+        int idx = 0;
+        for (int s : readSymbols) {
+            if (s < 0 || s >= symbolsPerTape) throw new IllegalArgumentException("symbol out of range: " + s);
+            idx = idx * symbolsPerTape + s;
+        }
+        return idx;
+    }
+
+    @Override
+    public void addTransition(int[] readSymbols, int nextStateId, int[] writeSymbols, char[] directions) {
+        if (writeSymbols.length != tapes || directions.length != tapes) throw new IllegalArgumentException("expected " + tapes + " write symbols and directions");
+        int[] t = new int[1 + 2 * tapes];
+        t[0] = nextStateId;
+        for (int i = 0; i < tapes; i++) {
+            t[1 + i] = writeSymbols[i];
+            t[1 + tapes + i] = directions[i];
+        }
+        transitions.put(index(readSymbols), t);
+    }
+
+    @Override
+    public void addTransition(int readSymbol, int nextStateId, int writeSymbol, char direction) {
+        if (tapes != 1) throw new UnsupportedOperationException("state " + id + " has " + tapes + " tapes; use the tuple form");
+        addTransition(new int[]{readSymbol}, nextStateId, new int[]{writeSymbol}, new char[]{direction});
+    }
+
+    @Override
+    public boolean hasTransition(int readIndex) { return transitions.containsKey(readIndex); }
+
+    @Override
+    public int getNextState(int readIndex) {
+        int[] t = transitions.get(readIndex);
+        return t == null ? -1 : t[0];
+    }
+
+    @Override
+    public int getWriteSymbol(int readIndex) { return getWriteSymbol(readIndex, 0); }
+
+    @Override
+    public char getDirection(int readIndex) { return getDirection(readIndex, 0); }
+
+    /** Symbol written on the given tape for the packed read index (-1 if absent). */
+    public int getWriteSymbol(int readIndex, int tape) {
+        int[] t = transitions.get(readIndex);
+        return t == null ? -1 : t[1 + tape];
+    }
+
+    /** Direction of the given tape's head for the packed read index ('N' if absent). */
+    public char getDirection(int readIndex, int tape) {
+        int[] t = transitions.get(readIndex);
+        return t == null ? 'N' : (char) t[1 + tapes + tape];
+    }
+
+}
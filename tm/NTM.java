@@ -0,0 +1,341 @@
+package tm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+/**
+ * Nondeterministic Turing Machine. States may hold several transitions per
+ * read symbol ({@link NTMState}); the machine accepts if some branch enters a
+ * halting state. {@link #search} explores configurations breadth-first, one
+ * depth level at a time, expanding each level in parallel on a fork-join
+ * pool. Tapes are shared copy-on-write between branches and configurations
+ * are deduplicated through a concurrent map. When two branches reach the
+ * same configuration, the one earliest in frontier order survives, so the
+ * result does not depend on thread timing.
+ */
+public class NTM {
+
+    /** Outcome of a configuration search. */
+    public static class Result {
+        /** ACCEPTED: a branch entered a halting state; REJECTED: every branch died; LIMIT: search bound reached. */
+        public enum Status { ACCEPTED, REJECTED, LIMIT }
+
+        public final Status status;
+        public final int depth;
+        public final long explored;
+        final Config accepting;
+
+        Result(Status status, int depth, long explored, Config accepting) {
+            this.status = status;
+            this.depth = depth;
+            this.explored = explored;
+            this.accepting = accepting;
+        }
+
+        /** Visited tape content of the accepting branch ("" unless ACCEPTED). */
+        public String getVisitedContentString() {
+            if (accepting == null || accepting.minVisited > accepting.maxVisited) return "";
+            StringBuilder sb = new StringBuilder();
+            for (int i = accepting.minVisited; i <= accepting.maxVisited; i++) sb.append(Math.max(0, accepting.tape.read(i)));
+            return sb.toString();
+        }
+
+        /** Number of visited cells on the accepting branch. */
+        public int getVisitedLength() {
+            return accepting == null ? 0 : Math.max(0, accepting.maxVisited - accepting.minVisited + 1);
+        }
+
+        /** Sum of the symbols on the accepting branch's tape. */
+        public long getSumOfSymbols() { return accepting == null ? 0L : accepting.tape.sum(); }
+    }
+
+    private final Map<Integer, TMStateInterface> states = new HashMap<>();
+    private int blankSymbol = 0;
+    // compiled alternatives: transitions of (state, symbol) are at [offsets[i], offsets[i + 1])
+    private int symbolsPerState = 0;
+    private int[] offsets = null;
+    private int[] nextStates = null;
+    private int[] writeSymbols = null;
+    private int[] moves = null; // -1 left, +1 right, 0 stay
+    private boolean[] haltingStates = null;
+    private int maxAlternatives = 1; // most alternatives of any (state, symbol), so orders of different parents never collide
+
+    public NTM() {}
+
+    public void addState(TMStateInterface state) { states.put(state.getId(), state); }
+
+    public TMStateInterface getState(int stateId) { return states.get(stateId); }
+
+    public void setBlankSymbol(int blankSymbol) { this.blankSymbol = blankSymbol; }
+
+    public int getBlankSymbol() { return blankSymbol; }
+
+    /** Flatten the states into compact per-(state, symbol) alternative lists. */
+    public void compile(int nStates, int symbolsPerState) {
+        this.symbolsPerState = symbolsPerState;
+        offsets = new int[nStates * symbolsPerState + 1];
+        haltingStates = new boolean[nStates];
+        List<int[]> flat = new ArrayList<>();
+        for (int s = 0; s < nStates; s++) {
+            TMStateInterface st = states.get(s);
+            haltingStates[s] = st != null && st.isHalting();
+            for (int sym = 0; sym < symbolsPerState; sym++) {
+                offsets[s * symbolsPerState + sym] = flat.size();
+                if (st == null || haltingStates[s]) continue;
+                int count = st instanceof NTMState ? ((NTMState) st).getTransitionCount(sym) : (st.hasTransition(sym) ? 1 : 0);
+                for (int k = 0; k < count; k++) {
+                    int next = st instanceof NTMState ? ((NTMState) st).getNextState(sym, k) : st.getNextState(sym);
+                    int write = st instanceof NTMState ? ((NTMState) st).getWriteSymbol(sym, k) : st.getWriteSymbol(sym);
+                    char dir = st instanceof NTMState ? ((NTMState) st).getDirection(sym, k) : st.getDirection(sym);
+                    flat.add(new int[]{next, write, dir == 'L' ? -1 : dir == 'R' ? 1 : 0});
+                }
+            }
+        }
+        offsets[nStates * symbolsPerState] = flat.size();
+        maxAlternatives = 1;
+        for (int i = 0; i < nStates * symbolsPerState; i++) maxAlternatives = Math.max(maxAlternatives, offsets[i + 1] - offsets[i]);
+        nextStates = new int[flat.size()];
+        writeSymbols = new int[flat.size()];
+        moves = new int[flat.size()];
+        for (int i = 0; i < flat.size(); i++) {
+            nextStates[i] = flat.get(i)[0];
+            writeSymbols[i] = flat.get(i)[1];
+            moves[i] = flat.get(i)[2];
+        }
+    }
+
+    /**
+     * Breadth-first search from state 0 with the head on the first input cell.
+     * Stops at the first depth where a branch accepts, when no branch is left,
+     * or when maxDepth levels / maxConfigs distinct configurations are exceeded.
+     */
+    public Result search(int[] input, int maxDepth, long maxConfigs, ForkJoinPool pool) {
+        if (offsets == null) throw new IllegalStateException("compile() must be called before search()");
+        Tape tape = new Tape(blankSymbol);
+        if (input != null) for (int i = 0; i < input.length; i++) tape = tape.write(i, input[i]);
+        int len = input == null ? 0 : input.length;
+        Config start = new Config(0, 0, tape, 0, Math.max(0, len - 1), 0, 0);
+        if (isHalting(0)) return new Result(Result.Status.ACCEPTED, 0, 1, start);
+
+        // each configuration maps to the instance that reached it first in (depth, frontier order)
+        Map<Config, Config> seen = new ConcurrentHashMap<>();
+        seen.put(start, start);
+        List<Config> frontier = new ArrayList<>();
+        frontier.add(start);
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            Level level = pool.invoke(new Expand(frontier, 0, frontier.size(), seen, depth));
+            if (level.accepting != null) return new Result(Result.Status.ACCEPTED, depth, seen.size(), level.accepting);
+            // a child kept by its task may since have lost to an earlier duplicate
+            List<Config> candidates = level.next;
+            frontier = pool.submit(() -> candidates.parallelStream().filter(c -> seen.get(c) == c).collect(Collectors.toList())).join();
+            if (frontier.isEmpty()) return new Result(Result.Status.REJECTED, depth - 1, seen.size(), null);
+            if (seen.size() > maxConfigs) return new Result(Result.Status.LIMIT, depth, seen.size(), null);
+        }
+        return new Result(Result.Status.LIMIT, maxDepth, seen.size(), null);
+    }
+
+    private boolean isHalting(int state) {
+        return state >= 0 && state < haltingStates.length && haltingStates[state];
+    }
+
+    /** Successors of one level; accepting is the earliest accepting child in frontier order. */
+    private static class Level {
+        final List<Config> next;
+        final Config accepting;
+        final long acceptRank;
+
+        Level(List<Config> next, Config accepting, long acceptRank) {
+            this.next = next;
+            this.accepting = accepting;
+            this.acceptRank = acceptRank;
+        }
+    }
+
+    /** Of two equal configurations, the one reached at the lower depth, then earlier in frontier order. */
+    private static Config earlier(Config a, Config b) {
+        if (a.depth != b.depth) return a.depth < b.depth ? a : b;
+        return a.order <= b.order ? a : b;
+    }
+
+    /** Expands frontier[from, to) by splitting the range until it is small enough to do directly. */
+    private class Expand extends RecursiveTask<Level> {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 256;
+        private final List<Config> frontier;
+        private final int from;
+        private final int to;
+        private final Map<Config, Config> seen;
+        private final int depth;
+
+        Expand(List<Config> frontier, int from, int to, Map<Config, Config> seen, int depth) {
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.seen = seen;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Level compute() {
+            if (to - from > THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                Expand left = new Expand(frontier, from, mid, seen, depth);
+                left.fork();
+                Level r = new Expand(frontier, mid, to, seen, depth).compute();
+                Level l = left.join();
+                List<Config> next = l.next;
+                next.addAll(r.next);
+                boolean leftFirst = l.accepting != null && (r.accepting == null || l.acceptRank < r.acceptRank);
+                return leftFirst ? new Level(next, l.accepting, l.acceptRank) : new Level(next, r.accepting, r.acceptRank);
+            }
+            List<Config> next = new ArrayList<>();
+            Config accepting = null;
+            long rank = Long.MAX_VALUE;
+            for (int i = from; i < to && accepting == null; i++) {
+                Config c = frontier.get(i);
+                int read = c.tape.read(c.head);
+                if (read < 0 || read >= symbolsPerState || c.state < 0 || c.state >= haltingStates.length) continue;
+                int base = c.state * symbolsPerState + read;
+                for (int t = offsets[base]; t < offsets[base + 1]; t++) {
+                    int head = c.head + moves[t];
+                    long order = (long) i * maxAlternatives + (t - offsets[base]);
+                    Config child = new Config(nextStates[t], head, c.tape.write(c.head, writeSymbols[t]),
+                            Math.min(c.minVisited, Math.min(c.head, head)), Math.max(c.maxVisited, Math.max(c.head, head)),
+                            depth, order);
+                    if (isHalting(child.state)) {
+                        accepting = child;
+                        rank = order;
+                        break;
+                    }
+                    if (seen.merge(child, child, NTM::earlier) == child) next.add(child);
+                }
+            }
+            return new Level(next, accepting, rank);
+        }
+    }
+
+    /**
+     * A machine configuration; equality ignores the visited range and the
+     * (depth, order) position at which the search reached it.
+     */
+    static final class Config {
+        final int state;
+        final int head;
+        final Tape tape;
+        final int minVisited;
+        final int maxVisited;
+        final int depth;
+        final long order; // frontier index * maxAlternatives + alternative
+        private final int hash;
+
+        Config(int state, int head, Tape tape, int minVisited, int maxVisited, int depth, long order) {
+            this.state = state;
+            this.head = head;
+            this.tape = tape;
+            this.minVisited = minVisited;
+            this.maxVisited = maxVisited;
+            this.depth = depth;
+            this.order = order;
+            this.hash = (int) (tape.hash ^ (tape.hash >>> 32)) * 31 * 31 + state * 31 + head;
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Config)) return false;
+            Config c = (Config) o;
+            return hash == c.hash && state == c.state && head == c.head && tape.sameContent(c.tape);
+        }
+    }
+
+    /**
+     * Immutable paged tape. write() returns a new tape that shares every page
+     * except the one written; a content hash is maintained incrementally so
+     * hashing a configuration never scans the tape.
+     */
+    static final class Tape {
+        static final int PAGE = 32;
+        private final int blank;
+        private final int firstPage;
+        private final int[][] pages; // null page = all blank
+        final long hash;
+
+        Tape(int blank) { this(blank, 0, new int[0][], 0L); }
+
+        private Tape(int blank, int firstPage, int[][] pages, long hash) {
+            this.blank = blank;
+            this.firstPage = firstPage;
+            this.pages = pages;
+            this.hash = hash;
+        }
+
+        int read(int i) {
+            int p = Math.floorDiv(i, PAGE) - firstPage;
+            if (p < 0 || p >= pages.length || pages[p] == null) return blank;
+            return pages[p][i & (PAGE - 1)];
+        }
+
+        Tape write(int i, int symbol) {
+            int old = read(i);
+            if (old == symbol) return this;
+            int page = Math.floorDiv(i, PAGE);
+            int first = pages.length == 0 ? page : Math.min(firstPage, page);
+            int last = pages.length == 0 ? page : Math.max(firstPage + pages.length - 1, page);
+            int[][] np = new int[last - first + 1][];
+            System.arraycopy(pages, 0, np, firstPage - first, pages.length);
+            int[] cells = np[page - first];
+            if (cells == null) {
+                cells = new int[PAGE];
+                if (blank != 0) java.util.Arrays.fill(cells, blank);
+            } else {
+                cells = cells.clone();
+            }
+            cells[i & (PAGE - 1)] = symbol;
+            np[page - first] = cells;
+            return new Tape(blank, first, np, hash - mix(i, old) + mix(i, symbol));
+        }
+
+        long sum() {
+            long s = 0;
+            for (int[] page : pages) if (page != null) for (int v : page) if (v != blank) s += v;
+            return s;
+        }
+
+        boolean sameContent(Tape o) {
+            if (hash != o.hash) return false;
+            int lo = Math.min(firstPage, o.firstPage);
+            int hi = Math.max(firstPage + pages.length, o.firstPage + o.pages.length);
+            for (int p = lo; p < hi; p++) {
+                int[] a = p >= firstPage && p < firstPage + pages.length ? pages[p - firstPage] : null;
+                int[] b = p >= o.firstPage && p < o.firstPage + o.pages.length ? o.pages[p - o.firstPage] : null;
+                if (a == b) continue;
+                for (int k = 0; k < PAGE; k++) {
+                    int va = a == null ? blank : a[k];
+                    int vb = b == null ? o.blank : b[k];
+                    if (va != vb) return false;
+                }
+            }
+            return true;
+        }
+
+        /** Per-cell hash contribution; blank cells contribute nothing so trailing blanks do not matter. */
+        private long mix(int i, int symbol) {
+            if (symbol == blank) return 0L;
+            long z = ((long) i << 32) ^ (symbol & 0xffffffffL);
+            z += 0x9e3779b97f4a7c15L;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+}
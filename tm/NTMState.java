@@ -0,0 +1,84 @@
+package tm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * State of a nondeterministic Turing Machine. Unlike {@link TMState},
+ * addTransition may be called several times for the same read symbol; each
+ * call adds another alternative. The single-transition getters of
+ * {@link TMStateInterface} report the first alternative.
+ */
+public class NTMState implements TMStateInterface {
+
+    private int id;
+    private boolean halting = false;
+
+    // alternatives keyed by read symbol, in the order they were added
+    private final Map<Integer, List<int[]>> transitions = new HashMap<>();
+
+    public NTMState() {}
+
+    public NTMState(int id) { this.id = id; }
+
+    @Override
+    public int getId() { return id; }
+
+    @Override
+    public void setId(int id) { this.id = id; }
+
+    @Override
+    public boolean isHalting() { return halting; }
+
+    @Override
+    public void setHalting(boolean halting) { this.halting = halting; }
+
+    @Override
+    public void addTransition(int readSymbol, int nextStateId, int writeSymbol, char direction) {
+        transitions.computeIfAbsent(readSymbol, k -> new ArrayList<>()).add(new int[]{nextStateId, writeSymbol, direction});
+    }
+
+    @Override
+    public boolean hasTransition(int readSymbol) { return getTransitionCount(readSymbol) > 0; }
+
+    @Override
+    public int getNextState(int readSymbol) { return getNextState(readSymbol, 0); }
+
+    @Override
+    public int getWriteSymbol(int readSymbol) { return getWriteSymbol(readSymbol, 0); }
+
+    @Override
+    public char getDirection(int readSymbol) { return getDirection(readSymbol, 0); }
+
+    /** Number of alternatives for the given read symbol. */
+    public int getTransitionCount(int readSymbol) {
+        List<int[]> alts = transitions.get(readSymbol);
+        return alts == null ? 0 : alts.size();
+    }
+
+    /** Next state of alternative k for the given read symbol (-1 if absent). */
+    public int getNextState(int readSymbol, int k) {
+        int[] t = alternative(readSymbol, k);
+        return t == null ? -1 : t[0];
+    }
+
+    /** Symbol written by alternative k for the given read symbol (-1 if absent). */
+    public int getWriteSymbol(int readSymbol, int k) {
+        int[] t = alternative(readSymbol, k);
+        return t == null ? -1 : t[1];
+    }
+
+    /** Direction of alternative k for the given read symbol ('N' if absent). */
+    public char getDirection(int readSymbol, int k) {
+        int[] t = alternative(readSymbol, k);
+        return t == null ? 'N' : (char) t[2];
+    }
+
+    private int[] alternative(int readSymbol, int k) {
+        List<int[]> alts = transitions.get(readSymbol);
+        return alts == null || k < 0 || k >= alts.size() ? null : alts.get(k);
+    }
+
+}
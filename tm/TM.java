@@ -1,8 +1,10 @@
 package tm;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 // This should be the Turing Machine class.
 /**
@@ -27,6 +29,15 @@ public class TM implements TMInterface {
     // track visited tape indices (inclusive)
     private int minVisited = Integer.MAX_VALUE;
     private int maxVisited = Integer.MIN_VALUE;
+    // number of transitions taken since the tape was initialized
+    private long stepCount = 0;
+    // optional execution trace recorder; null when tracing is off
+    private TMTrace tracer = null;
+    // set from another thread by cancel(); run() polls it every CANCEL_CHECK_INTERVAL steps
+    private volatile boolean cancelled = false;
+    private static final int CANCEL_CHECK_INTERVAL = 1 << 16;
+    // run() stops with CancellationException after this many steps; 0 = no limit
+    private long maxSteps = 0;
 
     public TM() {}
 
@@ -57,7 +68,7 @@ public class TM implements TMInterface {
         this.symbolsPerState = symbolsPerState;
         int len = nStates * symbolsPerState;
         transitionTable = new int[len];
-        java.util.Arrays.fill(transitionTable, -1);
+        Arrays.fill(transitionTable, -1);
         haltingStates = new boolean[nStates];
         for (int s = 0; s < nStates; s++) {
             TMStateInterface st = states.get(s);
@@ -79,25 +90,48 @@ public class TM implements TMInterface {
 
     @Override
     public void initializeTape(int[] input) {
-        int cap = Math.max(64, (input == null ? 0 : input.length) * 4 + 16);
+        int n = input == null ? 0 : input.length;
+        allocateTape(n);
+        if (n > 0) System.arraycopy(input, 0, tapeArray, tapeOrigin, n);
+        resetRun(n);
+    }
+
+    /** Initialize the tape from a digit or binary tape file, decoding it directly into the tape array. */
+    public void initializeTape(java.io.File inputFile, boolean binary) throws java.io.IOException {
+        initializeTape(inputFile, binary, symbolsPerState);
+    }
+
+    /**
+     * As above, rejecting cells at or above symbols (the alphabet size, blank
+     * included) with IllegalArgumentException; 0 accepts any symbol.
+     */
+    public void initializeTape(java.io.File inputFile, boolean binary, int symbols) throws java.io.IOException {
+        allocateTape(TMTapeFile.maxCells(inputFile));
+        int n = TMTapeFile.decode(inputFile, binary, tapeArray, tapeOrigin, symbols);
+        resetRun(n);
+    }
+
+    // allocate the n input cells plus a little blank room on both sides; the tape grows on demand
+    private void allocateTape(int n) {
+        int cap = (int) Math.min(n + Math.max(64L, n / 4), Integer.MAX_VALUE - 8);
         tapeArray = new int[cap];
-        for (int i = 0; i < cap; i++) tapeArray[i] = blankSymbol;
-        tapeOrigin = cap / 4;
-        if (input != null) {
-            for (int i = 0; i < input.length; i++) tapeArray[tapeOrigin + i] = input[i];
-            if (input.length > 0) {
-                minVisited = 0;
-                maxVisited = input.length - 1;
-            } else {
-                minVisited = Integer.MAX_VALUE;
-                maxVisited = Integer.MIN_VALUE;
-            }
+        // new arrays are already zero-filled, so only a non-zero blank needs a pass
+        if (blankSymbol != 0) Arrays.fill(tapeArray, blankSymbol);
+        tapeOrigin = (cap - n) / 2;
+    }
+
+    // head at 0, not halted, and the n input cells counted as visited
+    private void resetRun(int n) {
+        if (n > 0) {
+            minVisited = 0;
+            maxVisited = n - 1;
         } else {
             minVisited = Integer.MAX_VALUE;
             maxVisited = Integer.MIN_VALUE;
         }
         head = 0;
         halted = false;
+        stepCount = 0;
     }
 
     @Override
@@ -138,6 +172,8 @@ public class TM implements TMInterface {
         if (useTransitionTable && transitionTable != null) {
             if (haltingStates != null && currentState >= 0 && currentState < haltingStates.length && haltingStates[currentState]) { halted = true; return; }
             int read = readTape();
+            // a symbol outside the alphabet would index into another state's row
+            if (read < 0 || read >= symbolsPerState) { halted = true; return; }
             int idx = currentState * symbolsPerState + read;
             if (idx < 0 || idx >= transitionTable.length) { halted = true; return; }
             int packed = transitionTable[idx];
@@ -145,6 +181,8 @@ public class TM implements TMInterface {
             int next = packed >>> 8;
             int write = (packed >>> 1) & 0x7F;
             int dirBit = packed & 1;
+            if (tracer != null) tracer.record(currentState, read);
+            stepCount++;
 
             writeTape(write);
             currentState = next;
@@ -166,6 +204,8 @@ public class TM implements TMInterface {
         int next = state.getNextState(read);
         int write = state.getWriteSymbol(read);
         char dir = state.getDirection(read);
+        if (tracer != null) tracer.record(currentState, read);
+        stepCount++;
 
         writeTape(write);
         currentState = next;
@@ -180,14 +220,29 @@ public class TM implements TMInterface {
 
     @Override
     public void run() {
-        while (!halted) step();
+        while (!halted) {
+            // check for cancellation once per chunk so the step loop itself stays tight
+            int chunk = CANCEL_CHECK_INTERVAL;
+            if (maxSteps > 0) {
+                if (stepCount >= maxSteps) throw new CancellationException("step limit of " + maxSteps + " reached");
+                chunk = (int) Math.min(chunk, maxSteps - stepCount);
+            }
+            for (int i = 0; i < chunk && !halted; i++) step();
+            if (cancelled) throw new CancellationException("run cancelled after " + stepCount + " steps");
+        }
     }
 
+    /** Ask a run() in progress on another thread to stop; it throws CancellationException. */
+    public void cancel() { cancelled = true; }
+
+    /** Limit run() to n steps (0 = no limit); a machine still running then fails with CancellationException. */
+    public void setMaxSteps(long n) { maxSteps = Math.max(0, n); }
+
     @Override
     public boolean isHalted() { return halted; }
 
     @Override
-    public void reset() { tapeArray = null; head = 0; currentState = 0; halted = false; }
+    public void reset() { tapeArray = null; head = 0; currentState = 0; halted = false; stepCount = 0; }
     
     // ensure reset also clears visited range
     public void fullReset() { reset(); minVisited = Integer.MAX_VALUE; maxVisited = Integer.MIN_VALUE; }
@@ -213,6 +268,59 @@ public class TM implements TMInterface {
         return sb.toString();
     }
 
+    /** Return visited tape cells (leftmost to rightmost visited); empty if nothing was visited. */
+    int[] getVisitedCells() {
+        if (minVisited == Integer.MAX_VALUE) return new int[0];
+        int[] cells = new int[maxVisited - minVisited + 1];
+        for (int i = minVisited; i <= maxVisited; i++) {
+            int ai = tapeArray == null ? -1 : tapeOrigin + i;
+            cells[i - minVisited] = (ai < 0 || ai >= tapeArray.length) ? blankSymbol : tapeArray[ai];
+        }
+        return cells;
+    }
+
+    /** Number of cells the tape array currently holds (allocated, not visited). */
+    int getTapeCapacity() { return tapeArray == null ? 0 : tapeArray.length; }
+
+    /** Leftmost visited tape index (Integer.MAX_VALUE if nothing was visited). */
+    int getMinVisited() { return minVisited; }
+
+    /** Number of transitions taken since the tape was initialized. */
+    public long getStepCount() { return stepCount; }
+
+    /** Rightmost visited tape index (Integer.MIN_VALUE if nothing was visited). */
+    int getMaxVisited() { return maxVisited; }
+
+    /** Copy len logical cells starting at logical index from into dest; cells off the tape read as blank. */
+    void copyCells(int from, int[] dest, int destPos, int len) {
+        for (int i = 0; i < len; i++) {
+            int ai = tapeArray == null ? -1 : tapeOrigin + from + i;
+            dest[destPos + i] = (ai < 0 || ai >= tapeArray.length) ? blankSymbol : tapeArray[ai];
+        }
+    }
+
+    /**
+     * Restore a saved configuration. cells holds the logical tape range
+     * [start, start + cells.length); everything outside it is blank.
+     */
+    void restoreConfiguration(int start, int[] cells, int head, int state, boolean halted, int minVisited, int maxVisited, long stepCount) {
+        int cap = Math.max(64, cells.length * 2 + 16);
+        tapeArray = new int[cap];
+        if (blankSymbol != 0) Arrays.fill(tapeArray, blankSymbol);
+        int offset = (cap - cells.length) / 2;
+        System.arraycopy(cells, 0, tapeArray, offset, cells.length);
+        tapeOrigin = offset - start;
+        this.head = head;
+        this.currentState = state;
+        this.halted = halted;
+        this.minVisited = minVisited;
+        this.maxVisited = maxVisited;
+        this.stepCount = stepCount;
+    }
+
+    /** Attach a trace recorder that is told about every transition taken; null detaches it. */
+    public void setTracer(TMTrace tracer) { this.tracer = tracer; }
+
     /** Return number of visited tape squares (inclusive). */
     public int getVisitedLength() {
         if (minVisited == Integer.MAX_VALUE) return 0;
@@ -233,33 +341,37 @@ public class TM implements TMInterface {
 
     @Override
     public long getOutputAsNumber() {
-        // best-effort: compute BigInteger and if it fits in long, return it, else Long.MAX_VALUE
-        BigInteger v = getOutputAsBigInteger();
-        if (v.compareTo(BigInteger.valueOf(Long.MAX_VALUE)) > 0) return Long.MAX_VALUE;
-        return v.longValue();
+        // clamp to Long.MAX_VALUE when the output does not fit
+        int[] r = outputRange();
+        return r == null ? 0L : TMNumeric.decimalClamped(tapeArray, r[0], r[1]);
     }
 
     /** Compute output as BigInteger by concatenating non-blank cells from leftmost to rightmost. */
     public BigInteger getOutputAsBigInteger() {
-        if (tapeArray == null) return BigInteger.ZERO;
-        int minIdx = Integer.MAX_VALUE, maxIdx = Integer.MIN_VALUE;
-        for (int ai = 0; ai < tapeArray.length; ai++) {
-            if (tapeArray[ai] != blankSymbol) {
-                minIdx = Math.min(minIdx, ai);
-                maxIdx = Math.max(maxIdx, ai);
-            }
-        }
-        if (minIdx == Integer.MAX_VALUE) return BigInteger.ZERO;
-        java.lang.StringBuilder sb = new java.lang.StringBuilder();
-        for (int ai = minIdx; ai <= maxIdx; ai++) {
-            int s = tapeArray[ai];
-            sb.append(Integer.toString(Math.max(0, s)));
-        }
-        try {
-            return new BigInteger(sb.toString());
-        } catch (NumberFormatException e) {
-            return BigInteger.ZERO;
-        }
+        int[] r = outputRange();
+        return r == null ? BigInteger.ZERO : TMNumeric.decimal(tapeArray, r[0], r[1]);
+    }
+
+    /** Output read as a base-2 number; every cell in the output range must hold 0 or 1. */
+    public BigInteger getOutputAsBinary() {
+        int[] r = outputRange();
+        return r == null ? BigInteger.ZERO : TMNumeric.binary(tapeArray, r[0], r[1]);
+    }
+
+    /** Output read as a unary number: the count of 1s. */
+    public long getOutputAsUnary() {
+        int[] r = outputRange();
+        return r == null ? 0L : TMNumeric.unary(tapeArray, r[0], r[1]);
+    }
+
+    // array range [first, last + 1) from the leftmost to the rightmost non-blank cell, or null
+    private int[] outputRange() {
+        if (tapeArray == null) return null;
+        int first = 0, last = tapeArray.length - 1;
+        while (first <= last && tapeArray[first] == blankSymbol) first++;
+        if (first > last) return null;
+        while (tapeArray[last] == blankSymbol) last--;
+        return new int[]{first, last + 1};
     }
 
     @Override
@@ -286,20 +398,10 @@ public class TM implements TMInterface {
 
     // helper: set tape from number of 1s (unary input)
     public void initializeUnaryInput(int ones) {
-        int cap = Math.max(64, ones * 4 + 16);
-        tapeArray = new int[cap];
-        for (int i = 0; i < cap; i++) tapeArray[i] = blankSymbol;
-        tapeOrigin = cap / 4;
-        for (int i = 0; i < ones; i++) tapeArray[tapeOrigin + i] = 1;
-        head = 0;
-        halted = false;
-        if (ones <= 0) {
-            minVisited = Integer.MAX_VALUE;
-            maxVisited = Integer.MIN_VALUE;
-        } else {
-            minVisited = 0;
-            maxVisited = ones - 1;
-        }
+        int n = Math.max(0, ones);
+        allocateTape(n);
+        Arrays.fill(tapeArray, tapeOrigin, tapeOrigin + n, 1);
+        resetRun(n);
     }
 
     /**
@@ -0,0 +1,264 @@
+package tm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * End-to-end scaling benchmark. Machines from {@link TMGenerator} are
+ * written to files and pushed through the whole pipeline (parse, compile,
+ * run, report), and the results are written as CSV, one row per point:
+ *
+ * <ul>
+ * <li>{@code states} — steps/sec as the state count grows;</li>
+ * <li>{@code tape} — tape array memory as the tape grows, per growth pattern;</li>
+ * <li>{@code threads} — batch throughput as the thread count grows.</li>
+ * </ul>
+ *
+ * With {@code --baseline=CSV} (a previous run's output) every point whose
+ * steps/sec fell by more than {@code --tolerance} (default 0.10) is reported
+ * and the exit status is 1.
+ *
+ * Usage: {@code TMBenchmark [--suite=states,tape,threads] [--scale=F] [--repeat=R]
+ * [--max-threads=P] [--out=CSV] [--baseline=CSV] [--tolerance=F]}
+ */
+public class TMBenchmark {
+
+    static final String HEADER = "suite,pattern,x,states,steps,tape_length,seconds,steps_per_sec,tape_bytes";
+
+    /** One CSV row. */
+    static class Row {
+        final String suite;
+        final String pattern;
+        long x;
+        final int states;
+        long steps;
+        long tapeLength;
+        double seconds = Double.MAX_VALUE;
+        long tapeBytes;
+
+        Row(String suite, String pattern, long x, int states) {
+            this.suite = suite;
+            this.pattern = pattern;
+            this.x = x;
+            this.states = states;
+        }
+
+        String key() { return suite + "," + pattern + "," + x; }
+
+        double stepsPerSec() { return steps / seconds; }
+
+        String toCsv() {
+            return String.format(java.util.Locale.ROOT, "%s,%s,%d,%d,%d,%d,%.6f,%.0f,%d",
+                    suite, pattern, x, states, steps, tapeLength, seconds, stepsPerSec(), tapeBytes);
+        }
+    }
+
+    /** Result of one pipeline run. */
+    private static class Run {
+        long steps;
+        long tapeLength;
+        long tapeBytes;
+        TM machine;
+    }
+
+    private final Path dir;
+    private final double scale;
+    private final int repeat;
+    private final TMSimulator.Options opts = new TMSimulator.Options();
+
+    TMBenchmark(Path dir, double scale, int repeat) {
+        this.dir = dir;
+        this.scale = scale;
+        this.repeat = repeat;
+    }
+
+    private long steps(long base) { return Math.max(1000, (long) (base * scale)); }
+
+    /** Write the generated machine to a file and return it. */
+    private File write(TMGenerator.Machine m, String name) throws IOException {
+        Path p = dir.resolve(name);
+        Files.write(p, m.toText().getBytes(StandardCharsets.UTF_8));
+        return p.toFile();
+    }
+
+    /** Parse, compile, run and report one file with a cold template cache. */
+    private Run pipeline(File f) throws Exception {
+        Run r = new Run();
+        TMSimulator.CacheEntry entry = TMSimulator.loadEntry(f, new HashMap<>(), opts);
+        r.machine = TMSimulator.prepareMachine(entry, opts);
+        TMSimulator.runPrepared(f.getName(), entry, opts, r.machine).toHuman();
+        r.steps = r.machine.getStepCount();
+        r.tapeLength = r.machine.getVisitedLength();
+        r.tapeBytes = 4L * r.machine.getTapeCapacity();
+        return r;
+    }
+
+    /** Time the pipeline on f repeat times and keep the best run in row. */
+    private Row measure(Row row, File f) throws Exception {
+        for (int i = 0; i < repeat; i++) {
+            long start = System.nanoTime();
+            Run r = pipeline(f);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (seconds < row.seconds) {
+                row.seconds = seconds;
+                row.steps = r.steps;
+                row.tapeLength = r.tapeLength;
+                row.tapeBytes = r.tapeBytes;
+            }
+        }
+        return row;
+    }
+
+    /** steps/sec as the transition table grows; the step count is the same for every point. */
+    List<Row> statesSuite() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        for (int states : new int[]{4, 16, 64, 256, 1024, 4096}) {
+            File f = write(TMGenerator.generate(states, 3, TMGenerator.Pattern.RIGHT, steps(20_000_000), states), "states-" + states + ".txt");
+            rows.add(measure(new Row("states", "right", states, states), f));
+        }
+        return rows;
+    }
+
+    /** Tape memory (allocated array bytes) against tape length for each growth pattern. */
+    List<Row> tapeSuite() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        for (TMGenerator.Pattern p : TMGenerator.Pattern.values()) {
+            for (long target : new long[]{100_000, 1_000_000, 10_000_000, 100_000_000}) {
+                TMGenerator.Machine m = TMGenerator.generate(16, 3, p, steps(target), target);
+                File f = write(m, "tape-" + p.name().toLowerCase() + "-" + target + ".txt");
+                Row row = measure(new Row("tape", p.name().toLowerCase(), 0, 16), f);
+                row.x = row.tapeLength;
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /** Throughput of a fixed batch of machines on 1..maxThreads threads. */
+    List<Row> threadsSuite(int maxThreads) throws Exception {
+        List<File> batch = new ArrayList<>();
+        TMGenerator.Pattern[] patterns = TMGenerator.Pattern.values();
+        for (int i = 0; i < 16; i++) {
+            TMGenerator.Pattern p = patterns[i % patterns.length];
+            batch.add(write(TMGenerator.generate(64, 3, p, steps(2_000_000), i), "batch-" + i + ".txt"));
+        }
+        List<Row> rows = new ArrayList<>();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Row row = new Row("threads", "mixed", threads, 64);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                for (int rep = 0; rep < repeat; rep++) {
+                    long start = System.nanoTime();
+                    List<Future<Run>> runs = new ArrayList<>();
+                    for (File f : batch) runs.add(pool.submit(() -> pipeline(f)));
+                    long steps = 0;
+                    for (Future<Run> r : runs) steps += r.get().steps;
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    if (seconds < row.seconds) { row.seconds = seconds; row.steps = steps; }
+                }
+            } finally {
+                pool.shutdown();
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /** Rows slower than baseline by more than tolerance, described one per line. */
+    static List<String> regressions(List<Row> rows, Map<String, Double> baseline, double tolerance) {
+        List<String> out = new ArrayList<>();
+        for (Row r : rows) {
+            Double base = baseline.get(r.key());
+            if (base == null || base <= 0) continue;
+            double change = r.stepsPerSec() / base - 1;
+            if (change < -tolerance) {
+                out.add(String.format(java.util.Locale.ROOT, "regression: %s %s x=%d: %.0f steps/s vs baseline %.0f (%.1f%%)",
+                        r.suite, r.pattern, r.x, r.stepsPerSec(), base, change * 100));
+            }
+        }
+        return out;
+    }
+
+    /** steps_per_sec by row key from a CSV written by this benchmark. */
+    static Map<String, Double> readBaseline(Path csv) throws IOException {
+        Map<String, Double> m = new LinkedHashMap<>();
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        List<String> cols = Arrays.asList(HEADER.split(","));
+        int sps = cols.indexOf("steps_per_sec");
+        for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+            String[] f = line.split(",");
+            if (f.length != cols.size()) continue;
+            m.put(f[0] + "," + f[1] + "," + f[2], Double.parseDouble(f[sps]));
+        }
+        return m;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> suites = Arrays.asList("states", "tape", "threads");
+        double scale = 1.0, tolerance = 0.10;
+        int repeat = 3;
+        int maxThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        String out = null, baseline = null;
+        for (String a : args) {
+            try {
+                if (a.startsWith("--suite=")) suites = Arrays.asList(a.substring("--suite=".length()).split(","));
+                else if (a.startsWith("--scale=")) scale = Double.parseDouble(a.substring("--scale=".length()));
+                else if (a.startsWith("--repeat=")) repeat = Integer.parseInt(a.substring("--repeat=".length()));
+                else if (a.startsWith("--max-threads=")) maxThreads = Integer.parseInt(a.substring("--max-threads=".length()));
+                else if (a.startsWith("--out=")) out = a.substring("--out=".length());
+                else if (a.startsWith("--baseline=")) baseline = a.substring("--baseline=".length());
+                else if (a.startsWith("--tolerance=")) tolerance = Double.parseDouble(a.substring("--tolerance=".length()));
+                else System.err.println("Unknown option: " + a);
+            } catch (Exception ex) {
+                System.err.println("Invalid value: " + a);
+            }
+        }
+
+        Path dir = Files.createTempDirectory("tm-bench");
+        List<Row> rows = new ArrayList<>();
+        try {
+            TMBenchmark bench = new TMBenchmark(dir, scale, repeat);
+            // warm up the JIT on the whole pipeline before measuring anything
+            bench.pipeline(bench.write(TMGenerator.generate(16, 3, TMGenerator.Pattern.OSCILLATING, bench.steps(20_000_000), 0), "warmup.txt"));
+            if (suites.contains("states")) rows.addAll(bench.statesSuite());
+            if (suites.contains("tape")) rows.addAll(bench.tapeSuite());
+            if (suites.contains("threads")) rows.addAll(bench.threadsSuite(maxThreads));
+        } finally {
+            try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+                files.forEach(p -> p.toFile().delete());
+            }
+            Files.deleteIfExists(dir);
+        }
+
+        StringBuilder csv = new StringBuilder(HEADER).append('\n');
+        for (Row r : rows) csv.append(r.toCsv()).append('\n');
+        if (out == null) {
+            PrintStream ps = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+            ps.print(csv);
+            ps.flush();
+        } else {
+            Files.write(Path.of(out), csv.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        if (baseline != null) {
+            List<String> slow = regressions(rows, readBaseline(Path.of(baseline)), tolerance);
+            for (String s : slow) System.err.println(s);
+            if (!slow.isEmpty()) System.exit(1);
+            System.err.println("no regressions against " + baseline);
+        }
+    }
+
+}
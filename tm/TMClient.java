@@ -0,0 +1,99 @@
+package tm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thin client for {@link TMServer}. Usage:
+ *
+ * <pre>
+ * java -cp . tm.TMClient [--server=ADDR] [--inline] [--shutdown] [simulator options] files...
+ * </pre>
+ *
+ * Files are sent as absolute paths, or as machine text with {@code --inline}
+ * (use {@code -} to read a machine from stdin). Simulator options such as
+ * {@code --unary=N} are forwarded to the server. Reports are printed exactly
+ * as {@link TMSimulator} prints them; errors go to stderr.
+ */
+public class TMClient {
+
+    public static void main(String[] args) {
+        String address = System.getenv("TM_SERVER") != null ? System.getenv("TM_SERVER") : TMServer.DEFAULT_ADDRESS;
+        boolean inline = false;
+        boolean shutdown = false;
+        List<String> options = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        for (String a : args) {
+            if (a.startsWith("--server=")) { address = a.substring("--server=".length()); continue; }
+            if (a.equals("--inline")) { inline = true; continue; }
+            if (a.equals("--shutdown")) { shutdown = true; continue; }
+            if (a.startsWith("--input-file=")) {
+                // the server may run in another directory; send the tape file as an absolute path
+                options.add("--input-file=" + new java.io.File(a.substring("--input-file=".length())).getAbsolutePath());
+                continue;
+            }
+            if (a.startsWith("--")) { options.add(a); continue; }
+            files.add(a);
+        }
+
+        int errors = 0;
+        try (SocketChannel ch = TMProtocol.connect(address)) {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(ch));
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch));
+            if (!files.isEmpty()) {
+                for (String o : options) TMProtocol.writeLine(out, TMProtocol.OPTION + " " + o);
+                for (String f : files) {
+                    if (f.equals("-")) {
+                        String text = new String(System.in.readAllBytes(), StandardCharsets.UTF_8);
+                        TMProtocol.writeFrame(out, TMProtocol.MACHINE + " stdin", text);
+                    } else if (inline) {
+                        java.io.File file = new java.io.File(f);
+                        String text = new String(java.nio.file.Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+                        TMProtocol.writeFrame(out, TMProtocol.MACHINE + " " + file.getName(), text);
+                    } else {
+                        TMProtocol.writeLine(out, TMProtocol.FILE + " " + new java.io.File(f).getAbsolutePath());
+                    }
+                }
+                TMProtocol.writeLine(out, TMProtocol.RUN);
+                out.flush();
+                errors += readReplies(in);
+            }
+            if (shutdown) {
+                TMProtocol.writeLine(out, TMProtocol.SHUTDOWN);
+                out.flush();
+                TMProtocol.readLine(in);
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot talk to TM server at " + address + ": " + e.getMessage());
+            System.exit(2);
+        }
+        if (errors > 0) System.exit(1);
+    }
+
+    /** Print frames until DONE; returns the number of ERR frames seen. */
+    private static int readReplies(InputStream in) throws IOException {
+        int errors = 0;
+        String header;
+        while ((header = TMProtocol.readLine(in)) != null) {
+            if (header.equals(TMProtocol.DONE)) break;
+            String body = TMProtocol.readFrameBody(in, header);
+            if (header.startsWith(TMProtocol.ERR)) {
+                System.err.println(body);
+                errors++;
+            } else {
+                System.out.print(body);
+                System.out.flush();
+            }
+        }
+        return errors;
+    }
+
+}
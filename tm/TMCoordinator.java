@@ -0,0 +1,154 @@
+package tm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the input files on N local worker JVMs ({@code TMSimulator --worker})
+ * so huge-tape machines do not share one heap. Each worker is driven by its
+ * own thread speaking {@link TMProtocol} over the child's stdin/stdout; an
+ * idle worker pulls the next unclaimed file, so one long machine only ties
+ * up its own worker. Workers send each report back as JSON, and the reports
+ * go to a {@link TMReportSink} in input order, so {@code --format} applies
+ * as it does to a single-process run. A worker that dies
+ * (for example with OutOfMemoryError) has its file reported as an error and
+ * is replaced by a fresh process.
+ */
+public class TMCoordinator {
+
+    private final int nWorkers;
+    private final String heap;
+    private final List<String> workerArgs;
+    private final List<String> command; // explicit worker command line, or null for a child simulator JVM
+
+    /** workerArgs are simulator options passed on to every worker's command line. */
+    public TMCoordinator(int nWorkers, String heap, List<String> workerArgs) {
+        this.nWorkers = Math.max(1, nWorkers);
+        this.heap = heap;
+        this.workerArgs = workerArgs;
+        this.command = null;
+    }
+
+    /** Start every worker with the given command line, which must speak the worker side of TMProtocol. */
+    public TMCoordinator(int nWorkers, List<String> command) {
+        this.nWorkers = Math.max(1, nWorkers);
+        this.heap = null;
+        this.workerArgs = new ArrayList<>();
+        this.command = new ArrayList<>(command);
+    }
+
+    /** Run all inputs and write their reports to sink in input order; failures are also printed to stderr. */
+    public void run(File[] inputs, TMReportSink sink) throws InterruptedException, IOException {
+        List<CompletableFuture<TMReport>> results = new ArrayList<>();
+        for (int i = 0; i < inputs.length; i++) results.add(new CompletableFuture<>());
+        AtomicInteger nextIndex = new AtomicInteger();
+
+        List<Thread> drivers = new ArrayList<>();
+        for (int w = 0; w < Math.min(nWorkers, inputs.length); w++) {
+            Thread t = new Thread(() -> drive(inputs, nextIndex, results), "tm-coordinator-" + w);
+            t.setDaemon(true);
+            drivers.add(t);
+            t.start();
+        }
+
+        try {
+            for (CompletableFuture<TMReport> f : results) {
+                TMReport r = f.join();
+                if (r.status == TMReport.Status.ERROR) System.err.println(r.error);
+                sink.write(r);
+            }
+        } finally {
+            for (Thread t : drivers) t.join();
+        }
+    }
+
+    /** A worker process and the buffered ends of its stdin/stdout. */
+    private static class Worker {
+        final Process proc;
+        final InputStream in;
+        final OutputStream out;
+
+        Worker(Process proc) {
+            this.proc = proc;
+            this.in = new BufferedInputStream(proc.getInputStream());
+            this.out = new BufferedOutputStream(proc.getOutputStream());
+        }
+
+        /** Send one file and return its report; an ERR reply becomes an error report. */
+        TMReport request(File f) throws IOException {
+            TMProtocol.writeLine(out, TMProtocol.FILE + " " + f.getAbsolutePath());
+            TMProtocol.writeLine(out, TMProtocol.RUN);
+            out.flush();
+            String header = TMProtocol.readLine(in);
+            if (header == null) throw new IOException("worker exited");
+            String body = TMProtocol.readFrameBody(in, header);
+            if (!TMProtocol.DONE.equals(TMProtocol.readLine(in))) throw new IOException("worker exited");
+            if (header.startsWith(TMProtocol.ERR + " ")) return TMReport.error(f.getName(), body);
+            if (!header.startsWith(TMProtocol.REPORT + " ")) throw new IOException("unexpected reply: " + header);
+            try {
+                return TMReport.fromJson(body);
+            } catch (RuntimeException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        /** Closing stdin ends the worker's request loop; wait for it to exit. */
+        void close() {
+            try { out.close(); } catch (IOException ignored) { }
+            try { proc.waitFor(); } catch (InterruptedException e) { proc.destroyForcibly(); }
+        }
+    }
+
+    /** Worker driver loop: claim the next file, send it, collect its reply; restart the worker if it dies. */
+    private void drive(File[] inputs, AtomicInteger nextIndex, List<CompletableFuture<TMReport>> results) {
+        Worker worker = null;
+        int idx = -1;
+        try {
+            while ((idx = nextIndex.getAndIncrement()) < inputs.length) {
+                if (worker == null || !worker.proc.isAlive()) worker = new Worker(start());
+                try {
+                    results.get(idx).complete(worker.request(inputs[idx]));
+                } catch (IOException e) {
+                    results.get(idx).complete(TMReport.error(inputs[idx].getName(),
+                            "Error processing " + inputs[idx] + ": worker failed (" + e.getMessage() + ")"));
+                    worker.proc.destroyForcibly();
+                    worker = null;
+                }
+            }
+        } catch (IOException e) {
+            // cannot start a worker: fail the file already claimed and everything not yet claimed
+            for (; idx < inputs.length; idx = nextIndex.getAndIncrement()) {
+                results.get(idx).complete(TMReport.error(inputs[idx].getName(),
+                        "Error processing " + inputs[idx] + ": cannot start worker: " + e.getMessage()));
+            }
+        } finally {
+            if (worker != null) worker.close();
+        }
+    }
+
+    private Process start() throws IOException {
+        List<String> cmd = command;
+        if (cmd == null) {
+            cmd = new ArrayList<>();
+            cmd.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+            if (heap != null) cmd.add("-Xmx" + heap);
+            cmd.add("-cp");
+            cmd.add(System.getProperty("java.class.path"));
+            cmd.add(TMSimulator.class.getName());
+            cmd.add("--worker");
+            cmd.addAll(workerArgs);
+        }
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return pb.start();
+    }
+
+}
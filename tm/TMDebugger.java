@@ -0,0 +1,294 @@
+package tm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Time-travel debugger for a single TM run. While executing forward it keeps
+ * sparse checkpoints (state, head, visited range and the tape split into
+ * fixed-size pages) every {@code interval} steps. Pages that cannot have
+ * changed since the previous checkpoint are shared with it, so each
+ * checkpoint only stores the pages near the head. Any earlier step is
+ * reached by restoring the nearest checkpoint and re-executing forward.
+ *
+ * The first checkpoint does not copy the tape up front: a page of it is
+ * saved only just before a step first changes that page, and a null page in
+ * any checkpoint means "as at the first checkpoint". A large input therefore
+ * costs nothing until the machine rewrites it. Those saved pages are the one
+ * cost thinning cannot reclaim, since step 0 must stay reachable.
+ *
+ * When checkpoints exceed the memory budget the interval doubles and every
+ * other checkpoint is dropped, so memory stays bounded and a query never
+ * re-executes more than one interval.
+ */
+public class TMDebugger {
+
+    static final int PAGE = 1024;
+    static final long DEFAULT_BUDGET = 64L << 20;
+    private static final long INITIAL_INTERVAL = 4096;
+
+    private static class Checkpoint {
+        final long step;
+        final int state;
+        final int head;
+        final boolean halted;
+        final int minVisited;
+        final int maxVisited;
+        final int firstPage;
+        final int[][] pages; // null = unchanged since the first checkpoint
+
+        Checkpoint(long step, int state, int head, boolean halted, int minVisited, int maxVisited, int firstPage, int[][] pages) {
+            this.step = step;
+            this.state = state;
+            this.head = head;
+            this.halted = halted;
+            this.minVisited = minVisited;
+            this.maxVisited = maxVisited;
+            this.firstPage = firstPage;
+            this.pages = pages;
+        }
+    }
+
+    private final TM tm;
+    private final long memoryBudget;
+    private final List<Checkpoint> checkpoints = new ArrayList<>(); // ordered by step
+    private long interval = INITIAL_INTERVAL;
+    private long nextCheckpoint = INITIAL_INTERVAL;
+    private long frontier = 0; // furthest step executed so far
+    private long checkpointBytes = 0;
+    private final int[] cell = new int[1];
+
+    /** Debug tm from its current configuration, which becomes step 0. */
+    public TMDebugger(TM tm, long memoryBudget) {
+        this.tm = tm;
+        this.memoryBudget = memoryBudget;
+        this.frontier = tm.getStepCount();
+        this.nextCheckpoint = frontier + interval;
+        takeCheckpoint();
+    }
+
+    public long getStep() { return tm.getStepCount(); }
+
+    public long getInterval() { return interval; }
+
+    public int getCheckpointCount() { return checkpoints.size(); }
+
+    public long getCheckpointBytes() { return checkpointBytes; }
+
+    /** The machine being debugged, in the configuration of the current step. */
+    public TM getMachine() { return tm; }
+
+    /** Execute one transition; returns false if the machine is halted. */
+    public boolean stepForward() {
+        if (tm.isHalted()) return false;
+        // a step writes only the cell under the head; remember it if the first checkpoint has not saved its page
+        int head = tm.getHeadPosition();
+        Checkpoint base = checkpoints.get(0);
+        int slot = Math.floorDiv(head, PAGE) - base.firstPage;
+        boolean lazy = slot >= 0 && slot < base.pages.length && base.pages[slot] == null;
+        int old = 0;
+        if (lazy) {
+            tm.copyCells(head, cell, 0, 1);
+            old = cell[0];
+        }
+        long before = tm.getStepCount();
+        tm.step();
+        long now = tm.getStepCount();
+        if (now == before) return false; // halted without taking a transition
+        if (lazy) {
+            tm.copyCells(head, cell, 0, 1);
+            if (cell[0] != old) saveBasePage(base, slot, head, old);
+        }
+        if (now > frontier) {
+            frontier = now;
+            if (now >= nextCheckpoint) {
+                takeCheckpoint();
+                // next point on the (possibly widened) checkpoint grid
+                long origin = checkpoints.get(0).step;
+                nextCheckpoint = origin + ((now - origin) / interval + 1) * interval;
+            }
+        }
+        return true;
+    }
+
+    /** Undo one transition; returns false at the first step. */
+    public boolean stepBack() {
+        long cur = getStep();
+        if (cur == checkpoints.get(0).step) return false;
+        goTo(cur - 1);
+        return true;
+    }
+
+    /** Move to step k (clamped to the first step and, going forward, to the halting step). */
+    public void goTo(long k) {
+        Checkpoint base = nearest(k);
+        long cur = getStep();
+        if (k < cur || base.step > cur) restore(base);
+        while (getStep() < k && stepForward()) { }
+    }
+
+    /** Run forward until the machine halts. */
+    public void continueToHalt() {
+        while (stepForward()) { }
+    }
+
+    private Checkpoint nearest(long k) {
+        int lo = 0, hi = checkpoints.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (checkpoints.get(mid).step <= k) lo = mid; else hi = mid - 1;
+        }
+        return checkpoints.get(lo);
+    }
+
+    /** Store the first checkpoint's copy of a page the last step changed, with the overwritten cell put back. */
+    private void saveBasePage(Checkpoint base, int slot, int cellIndex, int oldValue) {
+        int start = (base.firstPage + slot) * PAGE;
+        int[] page = new int[PAGE];
+        tm.copyCells(start, page, 0, PAGE);
+        page[cellIndex - start] = oldValue;
+        base.pages[slot] = page;
+        checkpointBytes += pageBytes();
+        while (checkpointBytes > memoryBudget && checkpoints.size() > 1) thin();
+    }
+
+    private void restore(Checkpoint cp) {
+        Checkpoint base = checkpoints.get(0);
+        int[] cells = new int[cp.pages.length * PAGE];
+        for (int i = 0; i < cp.pages.length; i++) {
+            int[] page = cp.pages[i];
+            if (page == null) {
+                // unchanged since the first checkpoint: its saved copy, or the live tape if never written
+                page = base.pages[cp.firstPage + i - base.firstPage];
+                if (page == null) {
+                    tm.copyCells((cp.firstPage + i) * PAGE, cells, i * PAGE, PAGE);
+                    continue;
+                }
+            }
+            System.arraycopy(page, 0, cells, i * PAGE, PAGE);
+        }
+        tm.restoreConfiguration(cp.firstPage * PAGE, cells, cp.head, cp.state, cp.halted, cp.minVisited, cp.maxVisited, cp.step);
+    }
+
+    private void takeCheckpoint() {
+        int minV = tm.getMinVisited();
+        int maxV = tm.getMaxVisited();
+        Checkpoint prev = checkpoints.isEmpty() ? null : checkpoints.get(checkpoints.size() - 1);
+        int firstPage = 0;
+        int[][] pages = new int[0][];
+        if (minV != Integer.MAX_VALUE) {
+            firstPage = Math.floorDiv(minV, PAGE);
+            int lastPage = Math.floorDiv(maxV, PAGE);
+            pages = new int[lastPage - firstPage + 1][];
+            // the first checkpoint saves nothing yet: its pages are copied on first change
+            if (prev == null) {
+                checkpoints.add(new Checkpoint(tm.getStepCount(), tm.getCurrentState(), tm.getHeadPosition(), tm.isHalted(), minV, maxV, firstPage, pages));
+                checkpointBytes += 64 + 8L * pages.length;
+                return;
+            }
+            // the head moved at most this many cells since prev, so only nearby pages can differ
+            long reach = tm.getStepCount() - prev.step;
+            for (int p = firstPage; p <= lastPage; p++) {
+                boolean covered = p >= prev.firstPage && p < prev.firstPage + prev.pages.length;
+                int[] old = covered ? prev.pages[p - prev.firstPage] : null;
+                long lo = (long) p * PAGE, hi = lo + PAGE - 1;
+                boolean touched = hi >= prev.head - reach && lo <= prev.head + reach;
+                if (covered && !touched) { pages[p - firstPage] = old; continue; }
+                int[] cur = new int[PAGE];
+                tm.copyCells(p * PAGE, cur, 0, PAGE);
+                if (old != null && Arrays.equals(old, cur)) {
+                    pages[p - firstPage] = old;
+                } else {
+                    pages[p - firstPage] = cur;
+                    checkpointBytes += pageBytes();
+                }
+            }
+        }
+        checkpoints.add(new Checkpoint(tm.getStepCount(), tm.getCurrentState(), tm.getHeadPosition(), tm.isHalted(), minV, maxV, firstPage, pages));
+        checkpointBytes += 64 + 8L * pages.length;
+        while (checkpointBytes > memoryBudget && checkpoints.size() > 1) thin();
+    }
+
+    /** Double the interval and keep only checkpoints on the new grid (plus the first one). */
+    private void thin() {
+        interval *= 2;
+        long origin = checkpoints.get(0).step;
+        List<Checkpoint> kept = new ArrayList<>();
+        for (int i = 0; i < checkpoints.size(); i++) {
+            Checkpoint cp = checkpoints.get(i);
+            if (i == 0 || (cp.step - origin) % interval == 0) kept.add(cp);
+        }
+        checkpoints.clear();
+        checkpoints.addAll(kept);
+        // recount memory: pages shared between retained checkpoints are counted once
+        Set<int[]> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        long bytes = 0;
+        for (Checkpoint cp : checkpoints) {
+            bytes += 64 + 8L * cp.pages.length;
+            for (int[] page : cp.pages) if (page != null && seen.add(page)) bytes += pageBytes();
+        }
+        checkpointBytes = bytes;
+    }
+
+    private static long pageBytes() { return 16 + 4L * PAGE; }
+
+    /** Describe the configuration: step, state, head and the tape around the head (head cell in brackets). */
+    public String describe(int window) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("step: ").append(getStep()).append(tm.isHalted() ? " (halted)" : "").append('\n');
+        sb.append("state: ").append(tm.getCurrentState()).append('\n');
+        int head = tm.getHeadPosition();
+        sb.append("head: ").append(head).append('\n');
+        int[] cells = new int[2 * window + 1];
+        tm.copyCells(head - window, cells, 0, cells.length);
+        sb.append("tape[").append(head - window).append("..").append(head + window).append("]: ");
+        for (int i = 0; i < cells.length; i++) {
+            if (i == window) sb.append('[').append(cells[i]).append(']');
+            else sb.append(cells[i]);
+        }
+        return sb.append('\n').toString();
+    }
+
+    /**
+     * Interactive loop. Commands: s [n] step forward, b [n] step back,
+     * g k go to step k, c continue to halt, p print, i checkpoint info, q quit.
+     */
+    public void interact(BufferedReader in, PrintStream out) throws IOException {
+        out.print(describe(20));
+        out.print("> ");
+        out.flush();
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] parts = line.trim().split("\\s+");
+            String cmd = parts[0];
+            try {
+                long n = parts.length > 1 ? Long.parseLong(parts[1]) : 1;
+                switch (cmd) {
+                    case "s": for (long i = 0; i < n && stepForward(); i++) { } out.print(describe(20)); break;
+                    case "b": goTo(Math.max(0, getStep() - n)); out.print(describe(20)); break;
+                    case "g": goTo(n); out.print(describe(20)); break;
+                    case "c": continueToHalt(); out.print(describe(20)); break;
+                    case "p": case "": out.print(describe(20)); break;
+                    case "i":
+                        out.println("checkpoints: " + checkpoints.size() + " every " + interval + " steps, "
+                                + checkpointBytes / 1024 + " KiB of " + memoryBudget / 1024 + " KiB budget");
+                        break;
+                    case "q": return;
+                    default: out.println("commands: s [n], b [n], g STEP, c, p, i, q");
+                }
+            } catch (NumberFormatException e) {
+                out.println("not a number: " + parts[1]);
+            }
+            out.print("> ");
+            out.flush();
+        }
+    }
+
+}
@@ -0,0 +1,414 @@
+package tm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Enumerates every n-state, k-symbol machine in tree normal form and runs
+ * them to find the longest-running and the most productive halting machines
+ * (busy-beaver style). Usage:
+ *
+ * <pre>
+ * java -cp . tm.TMEnumerator --states=N --symbols=K [--max-steps=S] [--tape=T]
+ *                            [--threads=P] [--batch=B] [--write=FILE]
+ * </pre>
+ *
+ * Machines are generated lazily: a machine starts with only its first
+ * transition defined (write 1, move right, go to the second state) and is
+ * run until it reads an undefined transition; it is then replaced by one
+ * child per possible definition. New states and symbols are only introduced
+ * in order and the first move is always to the right, which removes state,
+ * symbol and mirror symmetries. A machine whose last undefined transition
+ * would be non-halting is pruned because it can never halt.
+ *
+ * Each worker thread advances a batch of machines in lockstep over
+ * struct-of-arrays buffers (one flat transition buffer, fixed-size byte
+ * tapes, per-slot state/head/step arrays). Pending machines are kept on a
+ * preallocated int stack, so running a machine allocates nothing.
+ */
+public class TMEnumerator {
+
+    static final int UNDEFINED = -1;
+    private static final int ROUND = 64; // lockstep steps between slot refills
+
+    // slot status after a round
+    private static final int RUNNING = 0;
+    private static final int EXPAND = 1;
+    private static final int LIMIT = 2;
+    private static final int OVERFLOW = 3;
+    private static final int IDLE = 4;
+
+    /** Totals and champions of an enumeration. */
+    public static class Result {
+        public final int states;
+        public final int symbols;
+        public long halted;
+        public long limit;
+        public long overflow;
+        public long pruned;
+        public int bestSteps = -1;
+        public long bestStepsSigma;
+        public int[] bestStepsMachine;
+        public long bestSigma = -1;
+        public int bestSigmaSteps;
+        public int[] bestSigmaMachine;
+
+        Result(int states, int symbols) {
+            this.states = states;
+            this.symbols = symbols;
+        }
+
+        /** Number of leaf machines examined (halted, hit a bound, or pruned). */
+        public long getMachines() { return halted + limit + overflow + pruned; }
+
+        void offerHalt(int steps, long sigma, int[] trans, int offset, int haltIndex) {
+            halted++;
+            if (steps > bestSteps || (steps == bestSteps && sigma > bestStepsSigma)) {
+                bestSteps = steps;
+                bestStepsSigma = sigma;
+                bestStepsMachine = snapshot(trans, offset, haltIndex, bestStepsMachine);
+            }
+            if (sigma > bestSigma || (sigma == bestSigma && steps > bestSigmaSteps)) {
+                bestSigma = sigma;
+                bestSigmaSteps = steps;
+                bestSigmaMachine = snapshot(trans, offset, haltIndex, bestSigmaMachine);
+            }
+        }
+
+        private int[] snapshot(int[] trans, int offset, int haltIndex, int[] into) {
+            int nk = states * symbols;
+            int[] m = into != null ? into : new int[nk];
+            System.arraycopy(trans, offset, m, 0, nk);
+            m[haltIndex] = encode(states, 1, 1);
+            return m;
+        }
+
+        void merge(Result o) {
+            halted += o.halted;
+            limit += o.limit;
+            overflow += o.overflow;
+            pruned += o.pruned;
+            if (o.bestStepsMachine != null && (o.bestSteps > bestSteps || (o.bestSteps == bestSteps && o.bestStepsSigma > bestStepsSigma))) {
+                bestSteps = o.bestSteps;
+                bestStepsSigma = o.bestStepsSigma;
+                bestStepsMachine = o.bestStepsMachine;
+            }
+            if (o.bestSigmaMachine != null && (o.bestSigma > bestSigma || (o.bestSigma == bestSigma && o.bestSigmaSteps > bestSigmaSteps))) {
+                bestSigma = o.bestSigma;
+                bestSigmaSteps = o.bestSigmaSteps;
+                bestSigmaMachine = o.bestSigmaMachine;
+            }
+        }
+
+        /**
+         * Render a machine in the TMSimulator input format: states 0..n-1 plus
+         * the halting state n, alphabet 0..k-1. Transitions the run never
+         * defined are written as halting ones.
+         */
+        public String toMachineFile(int[] machine) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(states + 1).append('\n').append(symbols - 1).append('\n');
+            for (int i = 0; i < machine.length; i++) {
+                int t = machine[i] == UNDEFINED ? encode(states, 1, 1) : machine[i];
+                sb.append(next(t)).append(',').append(write(t)).append(',').append(dir(t) == 1 ? 'R' : 'L').append('\n');
+            }
+            return sb.append('\n').toString();
+        }
+    }
+
+    static int encode(int next, int write, int dir) { return (next << 16) | (write << 1) | dir; }
+
+    static int next(int t) { return t >>> 16; }
+
+    static int write(int t) { return (t >>> 1) & 0x7FFF; }
+
+    static int dir(int t) { return t & 1; }
+
+    public static void main(String[] args) {
+        int states = 2, symbols = 2, maxSteps = 1000, tape = -1, batch = 256;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String out = null;
+        for (String a : args) {
+            try {
+                if (a.startsWith("--states=")) states = Integer.parseInt(a.substring("--states=".length()));
+                else if (a.startsWith("--symbols=")) symbols = Integer.parseInt(a.substring("--symbols=".length()));
+                else if (a.startsWith("--max-steps=")) maxSteps = Integer.parseInt(a.substring("--max-steps=".length()));
+                else if (a.startsWith("--tape=")) tape = Integer.parseInt(a.substring("--tape=".length()));
+                else if (a.startsWith("--threads=")) threads = Integer.parseInt(a.substring("--threads=".length()));
+                else if (a.startsWith("--batch=")) batch = Integer.parseInt(a.substring("--batch=".length()));
+                else if (a.startsWith("--write=")) out = a.substring("--write=".length());
+                else { System.err.println("Unknown argument: " + a); System.exit(2); }
+            } catch (NumberFormatException ex) {
+                System.err.println("Invalid value: " + a);
+                System.exit(2);
+            }
+        }
+        if (tape <= 0) tape = Math.min(2 * maxSteps + 2, 1 << 16);
+
+        long start = System.nanoTime();
+        Result r;
+        try {
+            r = enumerate(states, symbols, maxSteps, tape, threads, batch);
+        } catch (IllegalArgumentException | InterruptedException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        double elapsed = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        System.out.println("machines: " + r.getMachines());
+        System.out.println("halted: " + r.halted);
+        System.out.println("step limit: " + r.limit);
+        System.out.println("tape overflow: " + r.overflow);
+        System.out.println("pruned: " + r.pruned);
+        System.out.println("max steps: " + r.bestSteps + " (sigma " + r.bestStepsSigma + ")");
+        System.out.println("max sigma: " + r.bestSigma + " (steps " + r.bestSigmaSteps + ")");
+        if (r.bestStepsMachine != null) {
+            System.out.println("longest-running machine:");
+            System.out.print(r.toMachineFile(r.bestStepsMachine));
+            if (out != null) {
+                try {
+                    java.nio.file.Files.writeString(java.nio.file.Path.of(out), r.toMachineFile(r.bestStepsMachine));
+                } catch (java.io.IOException e) {
+                    System.err.println("Cannot write " + out + ": " + e.getMessage());
+                }
+            }
+        }
+        System.out.printf("elapsed (s): %.3f\n", elapsed);
+    }
+
+    /** Enumerate all states x symbols machines, running each for at most maxSteps steps on a tape of tapeLen cells. */
+    public static Result enumerate(int states, int symbols, int maxSteps, int tapeLen, int threads, int batch) throws InterruptedException {
+        if (states < 1 || symbols < 2) throw new IllegalArgumentException("need at least 1 state and 2 symbols");
+        if (symbols > 127) throw new IllegalArgumentException("at most 127 symbols are supported");
+        if (tapeLen < 2) throw new IllegalArgumentException("tape too small");
+        int nk = states * symbols;
+
+        // root: A0 -> 1RB (or 1RH-free loop to A for a single state)
+        int[] root = new int[Engine.META + nk];
+        Arrays.fill(root, Engine.META, root.length, UNDEFINED);
+        root[Engine.META] = encode(Math.min(1, states - 1), 1, 1);
+        root[0] = Math.min(2, states); // states introduced so far
+        root[1] = 2;                   // symbols introduced so far (0 and 1)
+        root[2] = 1;                   // transitions defined
+
+        // expand breadth-first on one engine until there is enough independent work to share
+        Result total = new Result(states, symbols);
+        Engine seeder = new Engine(states, symbols, maxSteps, tapeLen, 1, total);
+        ArrayDeque<int[]> seeds = new ArrayDeque<>();
+        seeds.add(root);
+        int target = threads <= 1 ? 1 : threads * 64;
+        while (!seeds.isEmpty() && seeds.size() < target) {
+            int[] entry = seeds.poll();
+            List<int[]> children = seeder.expandOne(entry);
+            if (children == null) continue; // leaf: already counted by the seeder
+            seeds.addAll(children);
+        }
+
+        ConcurrentLinkedQueue<int[]> shared = new ConcurrentLinkedQueue<>(seeds);
+        List<Thread> workers = new ArrayList<>();
+        List<Result> partials = new ArrayList<>();
+        for (int t = 0; t < Math.max(1, threads); t++) {
+            Result part = new Result(states, symbols);
+            partials.add(part);
+            Engine e = new Engine(states, symbols, maxSteps, tapeLen, batch, part);
+            Thread th = new Thread(() -> e.drain(shared), "tm-enumerator-" + workers.size());
+            workers.add(th);
+            th.start();
+        }
+        for (Thread th : workers) th.join();
+        for (Result part : partials) total.merge(part);
+        return total;
+    }
+
+    /** One worker: a batch of machine slots advanced in lockstep, fed from a local stack of pending machines. */
+    static final class Engine {
+        // pending-entry header: states introduced, symbols introduced, transitions defined
+        static final int META = 3;
+
+        private final int n;
+        private final int k;
+        private final int nk;
+        private final int maxSteps;
+        private final int tapeLen;
+        private final int batch;
+        private final Result result;
+
+        // struct-of-arrays slot storage
+        private final int[] trans;
+        private final byte[] tapes;
+        private final int[] state;
+        private final int[] head;
+        private final int[] steps;
+        private final int[] lo;
+        private final int[] hi;
+        private final int[] status;
+        private final boolean[] active;
+        private final int[] usedStates;
+        private final int[] usedSymbols;
+        private final int[] defined;
+
+        // pending machines, META + nk ints each; grows by doubling
+        private int[] stack;
+        private int stackTop = 0;
+
+        Engine(int n, int k, int maxSteps, int tapeLen, int batch, Result result) {
+            this.n = n;
+            this.k = k;
+            this.nk = n * k;
+            this.maxSteps = maxSteps;
+            this.tapeLen = tapeLen;
+            this.batch = batch;
+            this.result = result;
+            trans = new int[batch * nk];
+            tapes = new byte[batch * tapeLen];
+            state = new int[batch];
+            head = new int[batch];
+            steps = new int[batch];
+            lo = new int[batch];
+            hi = new int[batch];
+            status = new int[batch];
+            active = new boolean[batch];
+            usedStates = new int[batch];
+            usedSymbols = new int[batch];
+            defined = new int[batch];
+            stack = new int[1024 * (META + nk)];
+        }
+
+        /** Run every machine reachable from the shared seeds, pulling a new seed whenever local work runs out. */
+        void drain(ConcurrentLinkedQueue<int[]> seeds) {
+            while (true) {
+                int running = 0;
+                for (int b = 0; b < batch; b++) {
+                    if (!active[b] && stackTop == 0) {
+                        int[] seed = seeds.poll();
+                        if (seed != null) push(seed, 0);
+                    }
+                    if (!active[b] && stackTop > 0) load(b);
+                    if (active[b]) running++;
+                }
+                if (running == 0) return;
+                runRound();
+                for (int b = 0; b < batch; b++) {
+                    if (active[b] || status[b] == RUNNING || status[b] == IDLE) continue;
+                    finish(b, null);
+                    status[b] = IDLE;
+                }
+            }
+        }
+
+        /** Run a single machine to its first event; returns its children, or null if it was a leaf. */
+        List<int[]> expandOne(int[] entry) {
+            push(entry, 0);
+            load(0);
+            while (active[0]) runRound();
+            List<int[]> children = new ArrayList<>();
+            finish(0, children);
+            return status[0] == EXPAND ? children : null;
+        }
+
+        private void runRound() {
+            final int[] trans = this.trans;
+            final byte[] tapes = this.tapes;
+            for (int r = 0; r < ROUND; r++) {
+                for (int b = 0; b < batch; b++) {
+                    if (!active[b]) continue;
+                    int cell = b * tapeLen + head[b];
+                    int sym = tapes[cell];
+                    int t = trans[b * nk + state[b] * k + sym];
+                    if (t == UNDEFINED) { status[b] = EXPAND; active[b] = false; continue; }
+                    tapes[cell] = (byte) write(t);
+                    state[b] = next(t);
+                    int h = head[b] + (dir(t) == 1 ? 1 : -1);
+                    steps[b]++;
+                    if (h < 0 || h >= tapeLen) { status[b] = OVERFLOW; active[b] = false; continue; }
+                    head[b] = h;
+                    if (h < lo[b]) lo[b] = h;
+                    if (h > hi[b]) hi[b] = h;
+                    if (steps[b] >= maxSteps) { status[b] = LIMIT; active[b] = false; }
+                }
+            }
+        }
+
+        /** Pop the top pending machine into slot b, starting from a blank tape. */
+        private void load(int b) {
+            stackTop -= META + nk;
+            usedStates[b] = stack[stackTop];
+            usedSymbols[b] = stack[stackTop + 1];
+            defined[b] = stack[stackTop + 2];
+            System.arraycopy(stack, stackTop + META, trans, b * nk, nk);
+            Arrays.fill(tapes, b * tapeLen + lo[b], b * tapeLen + hi[b] + 1, (byte) 0);
+            state[b] = 0;
+            head[b] = tapeLen / 2;
+            lo[b] = head[b];
+            hi[b] = head[b];
+            steps[b] = 0;
+            status[b] = RUNNING;
+            active[b] = true;
+        }
+
+        private void push(int[] entry, int from) {
+            ensureStack();
+            System.arraycopy(entry, from, stack, stackTop, META + nk);
+            stackTop += META + nk;
+        }
+
+        private void ensureStack() {
+            if (stackTop + META + nk > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+
+        /** Account for a finished slot; on EXPAND push (or collect) one child per possible transition. */
+        private void finish(int b, List<int[]> collect) {
+            int st = status[b];
+            if (st == LIMIT) { result.limit++; return; }
+            if (st == OVERFLOW) { result.overflow++; return; }
+            if (st != EXPAND) return;
+
+            int sym = tapes[b * tapeLen + head[b]];
+            int idx = state[b] * k + sym;
+            int base = b * nk;
+
+            // halting child: write 1, step into the halt state; a leaf that needs no further run
+            long sigma = 0;
+            for (int i = b * tapeLen + lo[b]; i <= b * tapeLen + hi[b]; i++) if (tapes[i] != 0) sigma++;
+            if (sym == 0) sigma++;
+            result.offerHalt(steps[b] + 1, sigma, trans, base, idx);
+
+            // non-halting children; if this was the last undefined transition the machine can never halt
+            if (defined[b] + 1 == nk) {
+                result.pruned++;
+                return;
+            }
+            int maxNext = Math.min(usedStates[b], n - 1);
+            int maxWrite = Math.min(usedSymbols[b], k - 1);
+            for (int next = 0; next <= maxNext; next++) {
+                for (int w = 0; w <= maxWrite; w++) {
+                    for (int d = 0; d <= 1; d++) {
+                        int t = encode(next, w, d);
+                        if (collect != null) {
+                            int[] child = new int[META + nk];
+                            fillChild(child, 0, b, idx, t, next, w);
+                            collect.add(child);
+                        } else {
+                            ensureStack();
+                            fillChild(stack, stackTop, b, idx, t, next, w);
+                            stackTop += META + nk;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void fillChild(int[] into, int at, int b, int idx, int t, int next, int w) {
+            into[at] = Math.max(usedStates[b], next + 1);
+            into[at + 1] = Math.max(usedSymbols[b], w + 1);
+            into[at + 2] = defined[b] + 1;
+            System.arraycopy(trans, b * nk, into, at + META, nk);
+            into[at + META + idx] = t;
+        }
+    }
+
+}
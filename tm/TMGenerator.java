@@ -0,0 +1,233 @@
+package tm;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible halting machines in the {@link TMSimulator} input
+ * format for benchmarking. Every machine consumes an input of k 1s one cell
+ * at a time and, for each consumed cell, walks to the end of the tape and
+ * appends an output cell, so it runs for a known c * k^2 + O(k) steps on a
+ * tape of 2k to 3k cells:
+ *
+ * <ul>
+ * <li>{@code right} — consume from the left, append on the right;</li>
+ * <li>{@code left} — consume from the right, append on the left;</li>
+ * <li>{@code oscillating} — append on both ends, sweeping the whole tape.</li>
+ * </ul>
+ *
+ * Symbol 2 marks consumed cells and symbols 3..m are output cells (the
+ * machine cycles through them as it passes), so at least 3 symbols are
+ * needed. Extra states are added by replacing a state that loops on itself
+ * with a ring of identical copies; this grows the transition table without
+ * changing the step count. State ids other than the start and halting state
+ * are shuffled with the seed.
+ *
+ * Usage: {@code TMGenerator --states=N --symbols=M --pattern=P --steps=T [--seed=S] [--out=FILE]}
+ */
+public class TMGenerator {
+
+    public enum Pattern { RIGHT, LEFT, OSCILLATING }
+
+    // symbol classes a core state reacts to
+    private static final int BLANK = 0, ONE = 1, MARK = 2, OUT = 3;
+    // write values besides literal symbols
+    private static final int KEEP = -1, ROTATE = -2;
+    private static final int HALT = -1;
+
+    /** Core transition: next core state (or HALT), symbol to write and direction. */
+    private static int[] t(int next, int write, char dir) { return new int[]{next, write, dir}; }
+
+    private static final int[] H = t(HALT, KEEP, 'R');
+
+    /** Core machines, indexed [state][symbol class]; state 0 is the start state. */
+    private static int[][][] core(Pattern p) {
+        switch (p) {
+            case RIGHT: return new int[][][]{
+                // 0 consume the leftmost 1 (an output cell means every 1 is consumed)
+                {H, t(1, MARK, 'R'), H, H},
+                // 1 walk right to the first blank and append an output cell
+                {t(2, OUT, 'L'), t(1, KEEP, 'R'), t(1, KEEP, 'R'), t(1, ROTATE, 'R')},
+                // 2 walk back to the last consumed cell
+                {H, t(2, KEEP, 'L'), t(0, KEEP, 'R'), t(2, KEEP, 'L')},
+            };
+            case LEFT: return new int[][][]{
+                // 0 walk to the right end of the input
+                {t(1, KEEP, 'L'), t(0, KEEP, 'R'), H, H},
+                // 1 consume the rightmost 1
+                {H, t(2, MARK, 'L'), H, H},
+                // 2 walk left to the first blank and append an output cell
+                {t(3, OUT, 'R'), t(2, KEEP, 'L'), t(2, KEEP, 'L'), t(2, ROTATE, 'L')},
+                // 3 walk back to the last consumed cell
+                {H, t(3, KEEP, 'R'), t(1, KEEP, 'L'), t(3, KEEP, 'R')},
+            };
+            default: return new int[][][]{
+                // 0 skip consumed cells and consume the next 1 (output on the right means done)
+                {H, t(1, MARK, 'R'), t(0, KEEP, 'R'), H},
+                // 1 walk right to the first blank and append an output cell
+                {t(2, OUT, 'L'), t(1, KEEP, 'R'), t(1, KEEP, 'R'), t(1, ROTATE, 'R')},
+                // 2 walk left to the first blank and append an output cell
+                {t(3, OUT, 'R'), t(2, KEEP, 'L'), t(2, KEEP, 'L'), t(2, ROTATE, 'L')},
+                // 3 skip the left output cells
+                {H, t(1, MARK, 'R'), t(0, KEEP, 'R'), t(3, KEEP, 'R')},
+            };
+        }
+    }
+
+    // steps(k) = A k^2 + B k + C for the cores above (ring copies do not change it)
+    private static double[] stepPolynomial(Pattern p) {
+        switch (p) {
+            case RIGHT: return new double[]{2, 1, 1};
+            case LEFT: return new double[]{2, 2, 2};
+            default: return new double[]{4, 1, 1};
+        }
+    }
+
+    /** A generated machine: the transition lines and the input (k 1s). */
+    public static class Machine {
+        public final int states;
+        public final int symbols;
+        public final int inputLength;
+        final int[][][] table; // [state][symbol] = {next, write, dir}
+
+        Machine(int states, int symbols, int inputLength, int[][][] table) {
+            this.states = states;
+            this.symbols = symbols;
+            this.inputLength = inputLength;
+            this.table = table;
+        }
+
+        /** The machine in the simulator input format. */
+        public String toText() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(states).append('\n').append(symbols).append('\n');
+            for (int q = 0; q < states - 1; q++) {
+                for (int s = 0; s <= symbols; s++) {
+                    int[] tr = table[q][s];
+                    sb.append(tr[0]).append(',').append(tr[1]).append(',').append((char) tr[2]).append('\n');
+                }
+            }
+            for (int i = 0; i < inputLength; i++) sb.append('1');
+            return sb.append('\n').toString();
+        }
+
+        /** The machine as a runnable TM with its input on the tape. */
+        public TM toTM() {
+            TM tm = new TM();
+            for (int q = 0; q < states; q++) {
+                TMState st = new TMState(q);
+                if (q == states - 1) st.setHalting(true);
+                else for (int s = 0; s <= symbols; s++) st.addTransition(s, table[q][s][0], table[q][s][1], (char) table[q][s][2]);
+                tm.addState(st);
+            }
+            tm.buildTransitionTable(states, symbols + 1);
+            int[] input = new int[inputLength];
+            java.util.Arrays.fill(input, 1);
+            tm.initializeTape(input);
+            tm.setCurrentState(0);
+            return tm;
+        }
+    }
+
+    /** Input length whose run takes about targetSteps steps. */
+    static int inputLengthFor(Pattern p, long targetSteps) {
+        double[] c = stepPolynomial(p);
+        double k = (-c[1] + Math.sqrt(c[1] * c[1] + 4 * c[0] * Math.max(0, targetSteps - c[2]))) / (2 * c[0]);
+        return (int) Math.max(1, Math.round(k));
+    }
+
+    /** Exact number of steps the generated machine takes for an input of k 1s. */
+    public static long expectedSteps(Pattern p, int k) {
+        double[] c = stepPolynomial(p);
+        return (long) (c[0] * k * (double) k + c[1] * k + c[2]);
+    }
+
+    /**
+     * Generate a machine with exactly {@code states} states (including the
+     * halting state) over symbols 0..{@code symbols} that runs for about
+     * {@code targetSteps} steps.
+     */
+    public static Machine generate(int states, int symbols, Pattern pattern, long targetSteps, long seed) {
+        if (symbols < 3) throw new IllegalArgumentException("generated machines need at least 3 symbols");
+        int[][][] core = core(pattern);
+        int nCore = core.length;
+        if (states < nCore + 1) throw new IllegalArgumentException(pattern.name().toLowerCase() + " machines need at least " + (nCore + 1) + " states");
+
+        // ring sizes: spread the extra states over the core states that loop on themselves
+        int[] copies = new int[nCore];
+        java.util.Arrays.fill(copies, 1);
+        List<Integer> looping = new ArrayList<>();
+        for (int q = 0; q < nCore; q++) {
+            for (int[] tr : core[q]) if (tr[0] == q) { looping.add(q); break; }
+        }
+        for (int extra = 0; extra < states - 1 - nCore; extra++) copies[looping.get(extra % looping.size())]++;
+
+        // ids: core 0 copy 0 is the start state, the halting state is last, the rest shuffled
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 1; i < states - 1; i++) ids.add(i);
+        Collections.shuffle(ids, new Random(seed));
+        int[][] id = new int[nCore][];
+        int next = 0;
+        for (int q = 0; q < nCore; q++) {
+            id[q] = new int[copies[q]];
+            for (int c = 0; c < copies[q]; c++) id[q][c] = (q == 0 && c == 0) ? 0 : ids.get(next++);
+        }
+        int halt = states - 1;
+
+        int[][][] table = new int[states][][];
+        for (int q = 0; q < nCore; q++) {
+            for (int c = 0; c < copies[q]; c++) {
+                int[][] row = new int[symbols + 1][];
+                for (int s = 0; s <= symbols; s++) {
+                    int[] tr = core[q][Math.min(s, OUT)];
+                    int target;
+                    if (tr[0] == HALT) target = halt;
+                    else if (tr[0] == q) target = id[q][(c + 1) % copies[q]]; // stay on the ring
+                    else target = id[tr[0]][0];
+                    int write = tr[1] == KEEP ? s : tr[1] == ROTATE ? (s == symbols ? OUT : s + 1) : tr[1];
+                    row[s] = new int[]{target, write, tr[2]};
+                }
+                table[id[q][c]] = row;
+            }
+        }
+        return new Machine(states, symbols, inputLengthFor(pattern, targetSteps), table);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int states = 16, symbols = 3;
+        Pattern pattern = Pattern.RIGHT;
+        long steps = 1_000_000, seed = 361;
+        String out = null;
+        for (String a : args) {
+            try {
+                if (a.startsWith("--states=")) states = Integer.parseInt(a.substring("--states=".length()));
+                else if (a.startsWith("--symbols=")) symbols = Integer.parseInt(a.substring("--symbols=".length()));
+                else if (a.startsWith("--pattern=")) pattern = Pattern.valueOf(a.substring("--pattern=".length()).toUpperCase());
+                else if (a.startsWith("--steps=")) steps = Long.parseLong(a.substring("--steps=".length()));
+                else if (a.startsWith("--seed=")) seed = Long.parseLong(a.substring("--seed=".length()));
+                else if (a.startsWith("--out=")) out = a.substring("--out=".length());
+                else System.err.println("Unknown option: " + a);
+            } catch (Exception ex) {
+                System.err.println("Invalid value: " + a);
+            }
+        }
+        Machine m = generate(states, symbols, pattern, steps, seed);
+        if (out == null) {
+            PrintStream ps = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+            ps.print(m.toText());
+            ps.flush();
+        } else {
+            Files.write(Paths.get(out), m.toText().getBytes(StandardCharsets.UTF_8));
+        }
+        System.err.println(pattern.name().toLowerCase() + ": " + m.states + " states, input length " + m.inputLength
+                + ", " + expectedSteps(pattern, m.inputLength) + " steps");
+    }
+
+}
@@ -0,0 +1,127 @@
+package tm;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Numeric interpretations of a range of tape cells. Decimal values are built
+ * straight from the digits: runs of up to 18 digits become longs and are
+ * combined with a tree of powers of ten (10^18, 10^36, 10^72, ...), so a
+ * million-digit tape costs a few large multiplications instead of a String
+ * round trip. Binary packs the cells into bytes; unary counts the 1s.
+ */
+final class TMNumeric {
+
+    static final int LONG_DIGITS = 18;
+    private static final long[] POW10 = new long[LONG_DIGITS + 1];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i <= LONG_DIGITS; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private TMNumeric() { }
+
+    /**
+     * Decimal value of cells[from..to) read as the concatenation of the
+     * symbols' decimal forms (negative symbols count as 0).
+     */
+    static BigInteger decimal(int[] cells, int from, int to) {
+        byte[] digits = digits(cells, from, to);
+        int start = skipZeros(digits);
+        if (digits.length - start <= LONG_DIGITS) return BigInteger.valueOf(toLong(digits, start, digits.length));
+        List<BigInteger> powers = new ArrayList<>();
+        powers.add(BigInteger.valueOf(POW10[LONG_DIGITS]));
+        return combine(digits, start, digits.length, powers);
+    }
+
+    /** Like {@link #decimal} but clamped to Long.MAX_VALUE; avoids BigInteger for short outputs. */
+    static long decimalClamped(int[] cells, int from, int to) {
+        byte[] digits = digits(cells, from, to);
+        int start = skipZeros(digits);
+        int n = digits.length - start;
+        if (n <= LONG_DIGITS) return toLong(digits, start, digits.length);
+        if (n > LONG_DIGITS + 1) return Long.MAX_VALUE;
+        try {
+            return Math.addExact(Math.multiplyExact(toLong(digits, start, digits.length - 1), 10L), digits[digits.length - 1]);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /** Value of cells[from..to) read as base-2 digits, most significant first. */
+    static BigInteger binary(int[] cells, int from, int to) {
+        int n = to - from;
+        byte[] bytes = new byte[(n + 7) / 8];
+        // the last cell is bit 0 of the last byte
+        for (int i = 0; i < n; i++) {
+            int s = cells[to - 1 - i];
+            if (s != 0 && s != 1) throw new IllegalArgumentException("binary output needs symbols 0 and 1, found " + s);
+            if (s == 1) bytes[bytes.length - 1 - (i >>> 3)] |= (byte) (1 << (i & 7));
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    /** Number of cells in cells[from..to) holding the symbol 1. */
+    static long unary(int[] cells, int from, int to) {
+        long count = 0;
+        for (int i = from; i < to; i++) if (cells[i] == 1) count++;
+        return count;
+    }
+
+    // expand the cells into decimal digits; symbols above 9 contribute several digits
+    private static byte[] digits(int[] cells, int from, int to) {
+        int len = 0;
+        boolean multi = false;
+        for (int i = from; i < to; i++) {
+            int s = cells[i];
+            if (s > 9) { multi = true; len += Integer.toString(s).length(); } else len++;
+        }
+        byte[] digits = new byte[len];
+        if (!multi) {
+            for (int i = from; i < to; i++) digits[i - from] = (byte) Math.max(0, cells[i]);
+            return digits;
+        }
+        int p = 0;
+        for (int i = from; i < to; i++) {
+            int s = cells[i];
+            if (s > 9) for (char c : Integer.toString(s).toCharArray()) digits[p++] = (byte) (c - '0');
+            else digits[p++] = (byte) Math.max(0, s);
+        }
+        return digits;
+    }
+
+    private static int skipZeros(byte[] digits) {
+        int i = 0;
+        while (i < digits.length && digits[i] == 0) i++;
+        return i;
+    }
+
+    private static long toLong(byte[] digits, int from, int to) {
+        long v = 0;
+        for (int i = from; i < to; i++) v = v * 10 + digits[i];
+        return v;
+    }
+
+    /**
+     * Value of digits[from..to): split off a low part of 18 * 2^k digits
+     * (the largest such block shorter than the range) and combine
+     * high * 10^(18 * 2^k) + low. powers[k] caches 10^(18 * 2^k).
+     */
+    private static BigInteger combine(byte[] digits, int from, int to, List<BigInteger> powers) {
+        int n = to - from;
+        if (n <= LONG_DIGITS) return BigInteger.valueOf(toLong(digits, from, to));
+        int k = 0;
+        long block = LONG_DIGITS;
+        while (block * 2 < n) { block *= 2; k++; }
+        while (powers.size() <= k) {
+            BigInteger last = powers.get(powers.size() - 1);
+            powers.add(last.multiply(last));
+        }
+        int mid = to - (int) block;
+        BigInteger high = combine(digits, from, mid, powers);
+        BigInteger low = combine(digits, mid, to, powers);
+        return high.multiply(powers.get(k)).add(low);
+    }
+
+}
@@ -0,0 +1,158 @@
+package tm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Machine optimizer run on parsed templates before the transition table is
+ * built. It drops states that cannot be reached from the start state 0 and
+ * merges behaviorally identical states by partition refinement over the
+ * (next, write, direction) rows. The start state keeps id 0 and the merged
+ * halting state (if any is reachable) takes the highest id, so the result
+ * still follows the input file conventions.
+ */
+public class TMOptimizer {
+
+    /** Outcome of an optimization pass. */
+    public static class Result {
+        public final TM machine;
+        public final int nStates;
+        public final int statesRemoved;
+
+        Result(TM machine, int nStates, int statesRemoved) {
+            this.machine = machine;
+            this.nStates = nStates;
+            this.statesRemoved = statesRemoved;
+        }
+    }
+
+    private TMOptimizer() {}
+
+    /**
+     * Optimize the given template. Returns a result wrapping the original
+     * machine unchanged when it cannot be safely rewritten (missing states or
+     * transitions pointing outside 0..nStates-1).
+     */
+    public static Result optimize(TM template, int nStates, int symbolsPerState) {
+        Result unchanged = new Result(template, nStates, 0);
+        if (nStates <= 0 || symbolsPerState <= 0) return unchanged;
+
+        // flatten the template into rows; -1 marks a missing transition
+        int[] next = new int[nStates * symbolsPerState];
+        int[] write = new int[nStates * symbolsPerState];
+        char[] dir = new char[nStates * symbolsPerState];
+        boolean[] halting = new boolean[nStates];
+        Arrays.fill(next, -1);
+        for (int s = 0; s < nStates; s++) {
+            TMStateInterface st = template.getState(s);
+            if (st == null) return unchanged;
+            halting[s] = st.isHalting();
+            for (int sym = 0; sym < symbolsPerState; sym++) {
+                if (!st.hasTransition(sym)) continue;
+                int n = st.getNextState(sym);
+                if (n < 0 || n >= nStates) return unchanged;
+                int i = s * symbolsPerState + sym;
+                next[i] = n;
+                write[i] = st.getWriteSymbol(sym);
+                dir[i] = st.getDirection(sym);
+            }
+        }
+
+        // reachability from the start state; halting states never fire transitions
+        boolean[] reachable = new boolean[nStates];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        reachable[0] = true;
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            if (halting[s]) continue;
+            for (int sym = 0; sym < symbolsPerState; sym++) {
+                int n = next[s * symbolsPerState + sym];
+                if (n >= 0 && !reachable[n]) { reachable[n] = true; queue.add(n); }
+            }
+        }
+
+        // initial partition: all halting states together, others by their (write, dir) rows
+        int[] block = new int[nStates];
+        Arrays.fill(block, -1);
+        Map<List<Integer>, Integer> ids = new HashMap<>();
+        for (int s = 0; s < nStates; s++) {
+            if (!reachable[s]) continue;
+            List<Integer> key = new ArrayList<>();
+            key.add(halting[s] ? 1 : 0);
+            if (!halting[s]) {
+                for (int sym = 0; sym < symbolsPerState; sym++) {
+                    int i = s * symbolsPerState + sym;
+                    if (next[i] < 0) { key.add(-1); continue; }
+                    key.add(write[i]);
+                    key.add((int) dir[i]);
+                }
+            }
+            block[s] = ids.computeIfAbsent(key, k -> ids.size());
+        }
+        int blocks = ids.size();
+
+        // refine until stable: split blocks whose members move to different blocks
+        while (true) {
+            Map<List<Integer>, Integer> refined = new HashMap<>();
+            int[] nextBlock = new int[nStates];
+            Arrays.fill(nextBlock, -1);
+            for (int s = 0; s < nStates; s++) {
+                if (!reachable[s]) continue;
+                List<Integer> key = new ArrayList<>();
+                key.add(block[s]);
+                if (!halting[s]) {
+                    for (int sym = 0; sym < symbolsPerState; sym++) {
+                        int n = next[s * symbolsPerState + sym];
+                        key.add(n < 0 ? -1 : block[n]);
+                    }
+                }
+                nextBlock[s] = refined.computeIfAbsent(key, k -> refined.size());
+            }
+            block = nextBlock;
+            if (refined.size() == blocks) break;
+            blocks = refined.size();
+        }
+
+        if (blocks == nStates) return unchanged;
+
+        // renumber: start block -> 0, halting block -> last, others in first-seen order
+        int[] newId = new int[blocks];
+        Arrays.fill(newId, -1);
+        int haltBlock = -1;
+        for (int s = 0; s < nStates; s++) if (reachable[s] && halting[s]) { haltBlock = block[s]; break; }
+        int nextId = 0;
+        newId[block[0]] = nextId++;
+        for (int s = 0; s < nStates; s++) {
+            if (!reachable[s]) continue;
+            int b = block[s];
+            if (newId[b] >= 0 || b == haltBlock) continue;
+            newId[b] = nextId++;
+        }
+        if (haltBlock >= 0 && newId[haltBlock] < 0) newId[haltBlock] = nextId++;
+
+        TM out = new TM();
+        out.setBlankSymbol(template.getBlankSymbol());
+        boolean[] built = new boolean[blocks];
+        for (int s = 0; s < nStates; s++) {
+            if (!reachable[s] || built[block[s]]) continue;
+            built[block[s]] = true;
+            TMState st = new TMState(newId[block[s]]);
+            st.setHalting(halting[s]);
+            if (!halting[s]) {
+                for (int sym = 0; sym < symbolsPerState; sym++) {
+                    int i = s * symbolsPerState + sym;
+                    if (next[i] < 0) continue;
+                    st.addTransition(sym, newId[block[next[i]]], write[i], dir[i]);
+                }
+            }
+            out.addState(st);
+        }
+        return new Result(out, blocks, nStates - blocks);
+    }
+
+}
@@ -0,0 +1,115 @@
+package tm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Line-based wire protocol spoken between simulator clients and servers.
+ *
+ * Requests are single lines: {@code OPTION <flag>}, {@code FILE <path>},
+ * {@code MACHINE <name> <bytes>} followed by that many bytes of machine text,
+ * {@code RUN} (execute everything queued since the last RUN) and
+ * {@code SHUTDOWN}. Replies are length-prefixed frames {@code OUT <bytes>}
+ * (a report) or {@code ERR <bytes>} (an error message), one per queued
+ * machine in request order, followed by a {@code DONE} line. Worker
+ * processes answer {@code REPORT <bytes>} (the report as one JSON object)
+ * instead of {@code OUT}, so the coordinator can print it in any format.
+ *
+ * Addresses are either a TCP port on the loopback interface ({@code 7361})
+ * or a Unix-domain socket path ({@code unix:/tmp/tm.sock}).
+ */
+final class TMProtocol {
+
+    static final String OPTION = "OPTION";
+    static final String FILE = "FILE";
+    static final String MACHINE = "MACHINE";
+    static final String RUN = "RUN";
+    static final String SHUTDOWN = "SHUTDOWN";
+    static final String OUT = "OUT";
+    static final String ERR = "ERR";
+    static final String REPORT = "REPORT";
+    static final String DONE = "DONE";
+
+    private TMProtocol() {}
+
+    /** Read one '\n'-terminated line; returns null at end of stream. */
+    static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') return buf.toString(StandardCharsets.UTF_8);
+            buf.write(b);
+        }
+        return buf.size() == 0 ? null : buf.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Read exactly n bytes or fail with EOFException. */
+    static byte[] readBytes(InputStream in, int n) throws IOException {
+        byte[] data = in.readNBytes(n);
+        if (data.length != n) throw new EOFException("truncated frame: expected " + n + " bytes, got " + data.length);
+        return data;
+    }
+
+    static void writeLine(OutputStream out, String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Write a header line "kind <length>" followed by the payload bytes. */
+    static void writeFrame(OutputStream out, String kind, String body) throws IOException {
+        byte[] data = body.getBytes(StandardCharsets.UTF_8);
+        writeLine(out, kind + " " + data.length);
+        out.write(data);
+    }
+
+    /** Read the payload of a frame whose header line has already been consumed. */
+    static String readFrameBody(InputStream in, String header) throws IOException {
+        int sp = header.lastIndexOf(' ');
+        if (sp < 0) throw new IOException("bad frame header: " + header);
+        int n;
+        try { n = Integer.parseInt(header.substring(sp + 1)); } catch (NumberFormatException e) { throw new IOException("bad frame header: " + header); }
+        return new String(readBytes(in, n), StandardCharsets.UTF_8);
+    }
+
+    static boolean isUnix(String address) { return address.startsWith("unix:"); }
+
+    private static SocketAddress socketAddress(String address) {
+        if (isUnix(address)) return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address.trim()));
+    }
+
+    /** Open a listening channel on the given address (loopback TCP port or unix:path). */
+    static ServerSocketChannel bind(String address) throws IOException {
+        if (isUnix(address)) {
+            // remove a stale socket file left behind by a previous server
+            java.nio.file.Files.deleteIfExists(java.nio.file.Path.of(address.substring("unix:".length())));
+            ServerSocketChannel ch = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            ch.bind(socketAddress(address));
+            return ch;
+        }
+        ServerSocketChannel ch = ServerSocketChannel.open();
+        ch.bind(socketAddress(address));
+        return ch;
+    }
+
+    /** Connect to a server listening on the given address. */
+    static SocketChannel connect(String address) throws IOException {
+        if (isUnix(address)) {
+            SocketChannel ch = SocketChannel.open(StandardProtocolFamily.UNIX);
+            ch.connect(socketAddress(address));
+            return ch;
+        }
+        return SocketChannel.open(socketAddress(address));
+    }
+
+}
@@ -0,0 +1,291 @@
+package tm;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Result of running one machine file, independent of how it is printed.
+ * {@link #toHuman()} renders the classic report; {@link TMReportSink}
+ * implementations render it as JSON Lines or CSV for batch processing.
+ */
+public class TMReport {
+
+    public enum Status { HALTED, ACCEPTED, REJECTED, UNDECIDED, ERROR }
+
+    /** Visited output longer than this is reported as "very large" in the human format. */
+    static final int LARGE_THRESHOLD = 1000;
+
+    static final String CSV_HEADER = "name,status,steps,output_length,sum_of_symbols,parse_seconds,run_seconds,states_removed,output_value,error";
+
+    final String name;
+    Status status = Status.HALTED;
+    long steps = -1;          // transitions taken; -1 when not applicable (nondeterministic search)
+    boolean hasOutput = true; // false for a rejected or undecided search
+    String output;            // visited tape content, or null when longer than LARGE_THRESHOLD
+    int outputLength;
+    long sumOfSymbols;
+    String outputValue;       // --numeric reading, or null
+    int statesRemoved = -1;   // -1 when the optimizer did not run
+    int depth = -1;           // nondeterministic search only
+    long explored = -1;       // nondeterministic search only
+    int[] tapeLengths;        // multi-tape only: visited length of tapes 1..k-1
+    long[] tapeSums;          // multi-tape only: sum of symbols of tapes 1..k-1
+    double parseSeconds;
+    double runSeconds;
+    String error;
+
+    TMReport(String name) { this.name = name; }
+
+    /** Report for a file that failed; an exception without a message is described by its type. */
+    public static TMReport error(String name, Throwable cause) {
+        return error(name, cause.getMessage() != null ? cause.getMessage() : cause.toString());
+    }
+
+    static TMReport error(String name, String message) {
+        TMReport r = new TMReport(name);
+        r.status = Status.ERROR;
+        r.hasOutput = false;
+        r.error = message;
+        return r;
+    }
+
+    public String getName() { return name; }
+
+    public Status getStatus() { return status; }
+
+    /** Rebuild a report from its {@link #toJson()} form, as worker processes send it back. */
+    public static TMReport fromJson(String json) {
+        Map<String, Object> f = new JsonReader(json).object();
+        TMReport r = new TMReport((String) f.get("name"));
+        r.status = Status.valueOf(((String) f.get("status")).toUpperCase(Locale.ROOT));
+        if (f.containsKey("steps")) r.steps = Long.parseLong((String) f.get("steps"));
+        if (f.containsKey("depth")) {
+            r.depth = Integer.parseInt((String) f.get("depth"));
+            r.explored = Long.parseLong((String) f.get("configurations"));
+        }
+        r.hasOutput = f.containsKey("output_length");
+        if (r.hasOutput) {
+            r.outputLength = Integer.parseInt((String) f.get("output_length"));
+            r.sumOfSymbols = Long.parseLong((String) f.get("sum_of_symbols"));
+            r.output = (String) f.get("output");
+        }
+        r.outputValue = (String) f.get("output_value");
+        if (f.containsKey("states_removed")) r.statesRemoved = Integer.parseInt((String) f.get("states_removed"));
+        if (f.containsKey("tapes")) {
+            List<?> tapes = (List<?>) f.get("tapes");
+            r.tapeLengths = new int[tapes.size()];
+            r.tapeSums = new long[tapes.size()];
+            for (int t = 0; t < tapes.size(); t++) {
+                Map<?, ?> tape = (Map<?, ?>) tapes.get(t);
+                r.tapeLengths[t] = Integer.parseInt((String) tape.get("length"));
+                r.tapeSums[t] = Long.parseLong((String) tape.get("sum_of_symbols"));
+            }
+        }
+        if (f.containsKey("parse_seconds")) r.parseSeconds = Double.parseDouble((String) f.get("parse_seconds"));
+        if (f.containsKey("run_seconds")) r.runSeconds = Double.parseDouble((String) f.get("run_seconds"));
+        r.error = (String) f.get("error");
+        return r;
+    }
+
+    /** Set the output fields from the visited tape; content is only built when it will be printed. */
+    void setOutput(int length, java.util.function.Supplier<String> content, long sum) {
+        outputLength = length;
+        output = length > LARGE_THRESHOLD ? null : content.get();
+        sumOfSymbols = sum;
+    }
+
+    /** The report as TMSimulator has always printed it. */
+    public String toHuman() {
+        StringBuilder out = new StringBuilder();
+        out.append(name).append('\n');
+        if (depth >= 0) {
+            switch (status) {
+                case ACCEPTED: out.append("result: accepted\n"); break;
+                case REJECTED: out.append("result: rejected (every branch halted without accepting)\n"); break;
+                default: out.append("result: undecided (search limit reached)\n");
+            }
+            out.append("depth: ").append(depth).append('\n');
+            out.append("configurations explored: ").append(explored).append('\n');
+        }
+        if (hasOutput) {
+            if (output == null) {
+                out.append("output: very large\n");
+            } else {
+                out.append("output:\n");
+                out.append(output).append('\n');
+            }
+            out.append("output length: ").append(outputLength).append('\n');
+            out.append("sum of symbols: ").append(sumOfSymbols).append('\n');
+        }
+        if (outputValue != null) out.append("output value: ").append(outputValue).append('\n');
+        if (statesRemoved >= 0) out.append("states removed: ").append(statesRemoved).append('\n');
+        if (tapeLengths != null) {
+            for (int t = 0; t < tapeLengths.length; t++) {
+                out.append("tape ").append(t + 1).append(" length: ").append(tapeLengths[t])
+                        .append(", sum of symbols: ").append(tapeSums[t]).append('\n');
+            }
+        }
+        // preserve a trailing blank line to match expected output files
+        out.append('\n');
+        out.append(String.format("elapsed (s): %.3f\n", runSeconds));
+        return out.toString();
+    }
+
+    /** One JSON object (no trailing newline); absent fields are omitted. */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"name\":").append(quote(name));
+        sb.append(",\"status\":\"").append(status.name().toLowerCase(Locale.ROOT)).append('"');
+        if (steps >= 0) sb.append(",\"steps\":").append(steps);
+        if (depth >= 0) sb.append(",\"depth\":").append(depth).append(",\"configurations\":").append(explored);
+        if (hasOutput) {
+            sb.append(",\"output_length\":").append(outputLength);
+            sb.append(",\"sum_of_symbols\":").append(sumOfSymbols);
+            if (output != null) sb.append(",\"output\":").append(quote(output));
+        }
+        if (outputValue != null) sb.append(",\"output_value\":").append(quote(outputValue));
+        if (statesRemoved >= 0) sb.append(",\"states_removed\":").append(statesRemoved);
+        if (tapeLengths != null) {
+            sb.append(",\"tapes\":[");
+            for (int t = 0; t < tapeLengths.length; t++) {
+                if (t > 0) sb.append(',');
+                sb.append("{\"length\":").append(tapeLengths[t]).append(",\"sum_of_symbols\":").append(tapeSums[t]).append('}');
+            }
+            sb.append(']');
+        }
+        if (status != Status.ERROR) {
+            sb.append(",\"parse_seconds\":").append(seconds(parseSeconds));
+            sb.append(",\"run_seconds\":").append(seconds(runSeconds));
+        }
+        if (error != null) sb.append(",\"error\":").append(quote(error));
+        return sb.append('}').toString();
+    }
+
+    /** One CSV row matching CSV_HEADER (no trailing newline). */
+    public String toCsv() {
+        boolean ok = status != Status.ERROR;
+        return csv(name) + ',' + status.name().toLowerCase(Locale.ROOT)
+                + ',' + (steps >= 0 ? Long.toString(steps) : "")
+                + ',' + (hasOutput ? Integer.toString(outputLength) : "")
+                + ',' + (hasOutput ? Long.toString(sumOfSymbols) : "")
+                + ',' + (ok ? seconds(parseSeconds) : "")
+                + ',' + (ok ? seconds(runSeconds) : "")
+                + ',' + (statesRemoved >= 0 ? Integer.toString(statesRemoved) : "")
+                + ',' + (outputValue != null ? csv(outputValue) : "")
+                + ',' + (error != null ? csv(error) : "");
+    }
+
+    private static String seconds(double s) { return String.format(Locale.ROOT, "%.6f", s); }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Reads the JSON that toJson() writes: objects, arrays of objects, strings
+     * and numbers. Numbers are kept as their text.
+     */
+    private static final class JsonReader {
+        private final String s;
+        private int pos;
+
+        JsonReader(String s) { this.s = s; }
+
+        Map<String, Object> object() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            expect('{');
+            if (peek() == '}') { pos++; return m; }
+            do {
+                String key = string();
+                expect(':');
+                m.put(key, value());
+            } while (next() == ',');
+            pos--;
+            expect('}');
+            return m;
+        }
+
+        private Object value() {
+            char c = peek();
+            if (c == '"') return string();
+            if (c == '{') return object();
+            if (c == '[') {
+                List<Object> list = new ArrayList<>();
+                pos++;
+                if (peek() == ']') { pos++; return list; }
+                do list.add(value()); while (next() == ',');
+                pos--;
+                expect(']');
+                return list;
+            }
+            int start = pos;
+            while (pos < s.length() && "+-.0123456789eE".indexOf(s.charAt(pos)) >= 0) pos++;
+            if (pos == start) throw error("value");
+            return s.substring(start, pos);
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') return sb.toString();
+                if (c != '\\') { sb.append(c); continue; }
+                c = next();
+                switch (c) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > s.length()) throw error("escape");
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(c);
+                }
+            }
+        }
+
+        private char peek() {
+            if (pos >= s.length()) throw error("more input");
+            return s.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char c) {
+            if (next() != c) throw error("'" + c + "'");
+        }
+
+        private IllegalArgumentException error(String expected) {
+            return new IllegalArgumentException("bad report JSON: expected " + expected + " at offset " + pos);
+        }
+    }
+
+    private static String csv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+}
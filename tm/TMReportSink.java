@@ -0,0 +1,74 @@
+package tm;
+
+import java.io.IOException;
+
+/**
+ * Destination for run reports. The simulator picks one with
+ * {@code --format=human|jsonl|csv}; all of them write through a
+ * {@link TMReportWriter} so formatting is the only work done on the thread
+ * that produced the report.
+ */
+public interface TMReportSink extends AutoCloseable {
+
+    /** Emit one report. */
+    void write(TMReport report) throws IOException;
+
+    /** Flush everything written and release the writer. */
+    @Override
+    void close() throws IOException;
+
+    /** Sink for the named format ("human", "jsonl" or "csv"). */
+    static TMReportSink forFormat(String format, TMReportWriter out) throws IOException {
+        switch (format) {
+            case "human": return new Human(out);
+            case "jsonl": return new JsonLines(out);
+            case "csv": return new Csv(out);
+            default: throw new IllegalArgumentException("unknown report format: " + format);
+        }
+    }
+
+    /** The classic report text; failures are left to stderr as before. */
+    class Human implements TMReportSink {
+        private final TMReportWriter out;
+
+        public Human(TMReportWriter out) { this.out = out; }
+
+        @Override
+        public void write(TMReport report) throws IOException {
+            if (report.status != TMReport.Status.ERROR) out.write(report.toHuman());
+        }
+
+        @Override
+        public void close() throws IOException { out.close(); }
+    }
+
+    /** One JSON object per line, failures included. */
+    class JsonLines implements TMReportSink {
+        private final TMReportWriter out;
+
+        public JsonLines(TMReportWriter out) { this.out = out; }
+
+        @Override
+        public void write(TMReport report) throws IOException { out.write(report.toJson() + "\n"); }
+
+        @Override
+        public void close() throws IOException { out.close(); }
+    }
+
+    /** CSV with a header row, failures included. */
+    class Csv implements TMReportSink {
+        private final TMReportWriter out;
+
+        public Csv(TMReportWriter out) throws IOException {
+            this.out = out;
+            out.write(TMReport.CSV_HEADER + "\n");
+        }
+
+        @Override
+        public void write(TMReport report) throws IOException { out.write(report.toCsv() + "\n"); }
+
+        @Override
+        public void close() throws IOException { out.close(); }
+    }
+
+}
@@ -0,0 +1,107 @@
+package tm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes report text to a channel from a background thread. Callers only
+ * encode their text and hand it over; the writer thread packs the pieces
+ * into one large buffer and writes it when it fills or when no more text is
+ * waiting. The queue is bounded, so a producer that outruns the channel
+ * blocks instead of growing memory without limit.
+ */
+public class TMReportWriter implements AutoCloseable {
+
+    static final int DEFAULT_BUFFER = 1 << 20;
+    private static final byte[] END = new byte[0];
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(4096);
+    private final Thread thread;
+    private volatile IOException failure;
+
+    public TMReportWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.thread = new Thread(this::drain, "tm-report-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /** Queue text for writing; throws if an earlier write failed. */
+    public void write(String text) throws IOException {
+        enqueue(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Write everything queued so far, then stop the writer thread. The channel is left open. */
+    @Override
+    public void close() throws IOException {
+        enqueue(END);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw failure;
+    }
+
+    // wait for queue space, giving up if the writer thread has failed meanwhile
+    private void enqueue(byte[] chunk) throws IOException {
+        try {
+            while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (failure != null) throw failure;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while queueing output", e);
+        }
+        if (failure != null) throw failure;
+    }
+
+    private void drain() {
+        List<byte[]> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (byte[] chunk : batch) {
+                    if (chunk == END) { flush(); return; }
+                    put(chunk);
+                }
+                batch.clear();
+                // nothing else waiting: push what we have instead of holding it back
+                if (queue.isEmpty()) flush();
+            }
+        } catch (IOException e) {
+            failure = e;
+            queue.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void put(byte[] chunk) throws IOException {
+        int off = 0;
+        while (off < chunk.length) {
+            if (!buffer.hasRemaining()) flush();
+            int n = Math.min(buffer.remaining(), chunk.length - off);
+            buffer.put(chunk, off, n);
+            off += n;
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+}
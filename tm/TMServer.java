@@ -0,0 +1,366 @@
+package tm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Long-lived simulator daemon. Started with {@code TMSimulator --server[=ADDR]},
+ * it warms up the JIT once, keeps parsed machine templates cached across
+ * requests and runs submitted machines on a fixed worker pool. Clients
+ * ({@link TMClient}) speak {@link TMProtocol} and receive the same report
+ * text the command line prints. The same request loop also runs over
+ * stdin/stdout in the worker JVMs started by {@link TMCoordinator}.
+ *
+ * A run never outlives its connection: when the client goes away, machines
+ * it queued are dropped and the ones already running are cancelled. The
+ * server's {@code --max-steps} also caps every run, whatever the client asks.
+ */
+public class TMServer {
+
+    static final String DEFAULT_ADDRESS = "7361";
+    static final int INLINE_CACHE_SIZE = 256;
+
+    private final TMSimulator.Options defaults;
+    private final Map<String, TMSimulator.CacheEntry> cache = new ConcurrentHashMap<>();
+    // machine text sent inline is keyed by its digest; only the most recently used templates are kept
+    private final Map<String, TMSimulator.CacheEntry> inlineCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, TMSimulator.CacheEntry>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TMSimulator.CacheEntry> eldest) {
+                    return size() > INLINE_CACHE_SIZE;
+                }
+            });
+    private final ExecutorService workers;
+    private final int nWorkers;
+    private final boolean reportFrames; // worker mode: answer REPORT (JSON) instead of OUT
+    private volatile ServerSocketChannel listener;
+
+    public TMServer(TMSimulator.Options defaults) {
+        this(defaults, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Server with the default run options and the given number of worker threads. */
+    public TMServer(int workerThreads) {
+        this(new TMSimulator.Options(), workerThreads);
+    }
+
+    public TMServer(TMSimulator.Options defaults, int workerThreads) {
+        this(defaults, workerThreads, false);
+    }
+
+    /** With reportFrames, replies carry each report as JSON for a {@link TMCoordinator} to format. */
+    TMServer(TMSimulator.Options defaults, int workerThreads, boolean reportFrames) {
+        this.defaults = defaults;
+        this.reportFrames = reportFrames;
+        this.nWorkers = Math.max(1, workerThreads);
+        this.workers = Executors.newFixedThreadPool(nWorkers, r -> {
+            Thread t = new Thread(r, "tm-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Bind to address and serve clients until a SHUTDOWN request arrives. */
+    public void serve(String address) throws IOException {
+        warmUp();
+        listener = TMProtocol.bind(address);
+        System.err.println("TM server listening on " + address + " with " + nWorkers + " workers");
+        try {
+            while (true) {
+                SocketChannel client;
+                try {
+                    client = listener.accept();
+                } catch (AsynchronousCloseException e) {
+                    break; // closed by SHUTDOWN
+                }
+                Thread t = new Thread(() -> handle(client), "tm-connection");
+                t.setDaemon(true);
+                t.start();
+            }
+        } finally {
+            workers.shutdownNow();
+            if (TMProtocol.isUnix(address)) {
+                java.nio.file.Files.deleteIfExists(java.nio.file.Path.of(address.substring("unix:".length())));
+            }
+        }
+    }
+
+    /** Run a small looping machine on every worker so the hot paths are compiled before the first request. */
+    private void warmUp() {
+        StringBuilder text = new StringBuilder("2\n1\n1,1,R\n0,1,R\n");
+        char[] ones = new char[100_000];
+        Arrays.fill(ones, '1');
+        text.append(ones).append('\n');
+        TMSimulator.CacheEntry entry = TMSimulator.processLinesBuildTemplate("warmup", text.toString().lines().collect(java.util.stream.Collectors.toList()));
+        // plain options: the server's defaults may name an input file, a trace directory or extra work
+        TMSimulator.Options opts = new TMSimulator.Options();
+        List<Future<?>> pending = new ArrayList<>();
+        for (int w = 0; w < nWorkers; w++) {
+            pending.add(workers.submit(() -> {
+                for (int i = 0; i < 20; i++) TMSimulator.runEntry("warmup", entry, opts);
+                return null;
+            }));
+        }
+        for (Future<?> f : pending) {
+            try { f.get(); } catch (InterruptedException | ExecutionException e) { break; }
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (SocketChannel ch = channel) {
+            serveStream(new BufferedInputStream(inputOf(ch)), new BufferedOutputStream(outputOf(ch), 1 << 16));
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Connection error: " + e.getMessage());
+        }
+    }
+
+    // Channels.newInputStream holds the channel's blocking lock while it waits for input, which would stall
+    // replies written while the request reader is blocked, so both directions go to the channel directly
+    private static InputStream inputOf(SocketChannel ch) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                return ch.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    private static OutputStream outputOf(SocketChannel ch) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+                while (buf.hasRemaining()) ch.write(buf);
+            }
+        };
+    }
+
+    /** Machines started for one connection, so they can be stopped when it closes. */
+    private static class Connection {
+        final List<Future<TMReport>> queued = new CopyOnWriteArrayList<>(); // also cancelled from the reader thread
+        final Set<Runnable> running = ConcurrentHashMap.newKeySet(); // cancel actions of started machines
+        volatile boolean closed;
+
+        /** Track a machine while it runs; one starting after close() is cancelled at once. */
+        void started(Runnable cancel) {
+            running.add(cancel);
+            if (closed) cancel.run();
+        }
+
+        void finished(Runnable cancel) { running.remove(cancel); }
+
+        void close() {
+            closed = true;
+            for (Future<TMReport> f : queued) f.cancel(false);
+            for (Runnable cancel : running) cancel.run();
+        }
+
+        /** The onStart hook for one run; closing it stops tracking the machine. */
+        Run run() { return new Run(); }
+
+        final class Run implements Consumer<Runnable>, AutoCloseable {
+            private Runnable cancel;
+
+            @Override
+            public void accept(Runnable cancel) {
+                this.cancel = cancel;
+                started(cancel);
+            }
+
+            @Override
+            public void close() {
+                if (cancel != null) finished(cancel);
+            }
+        }
+    }
+
+    /** One request line and, for MACHINE, the machine text that followed it. */
+    private static final class Request {
+        static final Request END = new Request(null, null);
+        final String line;
+        final String body;
+
+        Request(String line, String body) {
+            this.line = line;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Answer protocol requests read from in until end of stream or SHUTDOWN.
+     * Used for socket connections and, in worker mode, for a coordinator's pipes.
+     * Requests are read on a separate thread so that the end of the stream is
+     * noticed, and the connection's runs cancelled, even while a RUN is waiting.
+     */
+    public void serveStream(InputStream in, OutputStream out) throws IOException, InterruptedException {
+        Connection conn = new Connection();
+        BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+        Thread reader = new Thread(() -> readRequests(in, requests, conn), "tm-reader");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            serveRequests(requests, out, conn);
+        } finally {
+            conn.close();
+        }
+    }
+
+    // a client that stops sending before SHUTDOWN has gone away: nothing it asked for is still wanted
+    private static void readRequests(InputStream in, BlockingQueue<Request> requests, Connection conn) {
+        try {
+            String line;
+            while ((line = TMProtocol.readLine(in)) != null) {
+                String body = line.startsWith(TMProtocol.MACHINE + " ") ? TMProtocol.readFrameBody(in, line) : null;
+                requests.add(new Request(line, body));
+                if (line.equals(TMProtocol.SHUTDOWN)) return;
+            }
+        } catch (IOException e) {
+            if (!conn.closed) System.err.println("Connection error: " + e.getMessage());
+        }
+        conn.close();
+        requests.add(Request.END);
+    }
+
+    private void serveRequests(BlockingQueue<Request> requests, OutputStream out, Connection conn) throws IOException, InterruptedException {
+        TMSimulator.Options opts = defaults.copy();
+        List<Future<TMReport>> queued = conn.queued;
+        while (true) {
+            Request req = requests.take();
+            if (req == Request.END) return;
+            String line = req.line;
+            if (line.isEmpty()) continue;
+            int sp = line.indexOf(' ');
+            String cmd = sp < 0 ? line : line.substring(0, sp);
+            String arg = sp < 0 ? "" : line.substring(sp + 1);
+            switch (cmd) {
+                case TMProtocol.OPTION:
+                    if (!TMSimulator.parseOption(arg, opts)) queued.add(failed("Unknown option: " + arg));
+                    break;
+                case TMProtocol.FILE: {
+                    java.io.File f = new java.io.File(arg);
+                    TMSimulator.Options o = runOptions(opts);
+                    queued.add(workers.submit(() -> runFile(f, o, conn)));
+                    break;
+                }
+                case TMProtocol.MACHINE: {
+                    String text = req.body;
+                    int last = arg.lastIndexOf(' ');
+                    String name = last < 0 ? "inline" : arg.substring(0, last);
+                    TMSimulator.Options o = runOptions(opts);
+                    queued.add(workers.submit(() -> runInline(name, text, o, conn)));
+                    break;
+                }
+                case TMProtocol.RUN:
+                    for (Future<TMReport> f : queued) {
+                        try {
+                            TMReport r = f.get();
+                            if (reportFrames) TMProtocol.writeFrame(out, TMProtocol.REPORT, r.toJson());
+                            else TMProtocol.writeFrame(out, TMProtocol.OUT, r.toHuman());
+                        } catch (ExecutionException e) {
+                            if (conn.closed) return;
+                            Throwable c = e.getCause();
+                            TMProtocol.writeFrame(out, TMProtocol.ERR, c.getMessage() == null ? c.toString() : c.getMessage());
+                        } catch (CancellationException e) {
+                            return; // dropped because the client went away
+                        }
+                        out.flush();
+                    }
+                    queued.clear();
+                    opts = defaults.copy();
+                    TMProtocol.writeLine(out, TMProtocol.DONE);
+                    out.flush();
+                    break;
+                case TMProtocol.SHUTDOWN:
+                    TMProtocol.writeLine(out, TMProtocol.DONE);
+                    out.flush();
+                    if (listener != null) listener.close();
+                    return;
+                default:
+                    queued.add(failed("Unknown request: " + line));
+            }
+        }
+    }
+
+    // the client's options for one run, with the server's step limit as a ceiling
+    private TMSimulator.Options runOptions(TMSimulator.Options opts) {
+        TMSimulator.Options o = opts.copy();
+        if (defaults.maxSteps > 0 && (o.maxSteps == 0 || o.maxSteps > defaults.maxSteps)) o.maxSteps = defaults.maxSteps;
+        return o;
+    }
+
+    private TMReport runFile(java.io.File f, TMSimulator.Options opts, Connection conn) throws Exception {
+        try (Connection.Run run = conn.run()) {
+            return TMSimulator.runFile(f, cache, opts, run);
+        } catch (Exception e) {
+            throw new Exception("Error processing " + f + ": " + e.getMessage(), e);
+        }
+    }
+
+    /** Run machine text sent by the client; the last {@value #INLINE_CACHE_SIZE} templates are cached by a digest of the text. */
+    private TMReport runInline(String name, String text, TMSimulator.Options opts, Connection conn) throws Exception {
+        try (Connection.Run run = conn.run()) {
+            long parseStart = System.nanoTime();
+            java.security.MessageDigest md = java.security.MessageDigest.getInstance("SHA-256");
+            String key = "inline:" + java.util.HexFormat.of().formatHex(md.digest(text.getBytes(StandardCharsets.UTF_8)))
+                    + (opts.optimize ? "#optimized" : "");
+            // computeIfAbsent so concurrent requests for the same text parse it once
+            TMSimulator.CacheEntry entry = inlineCache.computeIfAbsent(key, k -> {
+                TMSimulator.CacheEntry e = TMSimulator.processLinesBuildTemplate(name, text.lines().collect(java.util.stream.Collectors.toList()));
+                if (opts.optimize) TMSimulator.optimizeEntry(e);
+                return e;
+            });
+            double parseSeconds = (System.nanoTime() - parseStart) / 1_000_000_000.0;
+            TMReport report = TMSimulator.runReport(name, entry, opts, run);
+            report.parseSeconds = parseSeconds;
+            return report;
+        } catch (Exception e) {
+            throw new Exception("Error processing " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Future<TMReport> failed(String message) {
+        java.util.concurrent.CompletableFuture<TMReport> f = new java.util.concurrent.CompletableFuture<>();
+        f.completeExceptionally(new IllegalArgumentException(message));
+        return f;
+    }
+
+}
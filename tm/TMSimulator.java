@@ -7,19 +7,71 @@ public class TMSimulator {
 
         java.io.File cwd = new java.io.File(System.getProperty("user.dir"));
         java.io.File[] inputs;
-        // defaults
-        int defaultUnary = 1;
+        Options opts = new Options();
+        String serverAddress = null;
+        boolean debug = false;
+        long debugBudget = TMDebugger.DEFAULT_BUDGET;
+        boolean worker = false;
+        boolean watch = false;
+        int workers = 0;
+        String workerHeap = null;
+        String format = null; // --format, human unless given
+        java.util.List<String> workerArgs = new java.util.ArrayList<>(); // run options forwarded to worker JVMs
 
         // simple arg parsing: global flags then file names
         java.util.List<String> fileArgs = new java.util.ArrayList<>();
         for (String a : args) {
-            if (a.startsWith("--unary=")) {
-                try { defaultUnary = Integer.parseInt(a.substring("--unary=".length())); } catch (Exception ex) { System.err.println("Invalid --unary value: " + a); }
+            if (a.equals("--server") || a.startsWith("--server=")) {
+                serverAddress = a.equals("--server") ? TMServer.DEFAULT_ADDRESS : a.substring("--server=".length());
+                continue;
+            }
+            if (a.equals("--debug")) { debug = true; continue; }
+            if (a.startsWith("--debug-memory=")) {
+                try { debugBudget = Long.parseLong(a.substring("--debug-memory=".length())) << 20; } catch (Exception ex) { System.err.println("Invalid --debug-memory value: " + a); }
+                continue;
+            }
+            if (a.equals("--worker")) { worker = true; continue; }
+            if (a.equals("--watch")) { watch = true; continue; }
+            if (a.startsWith("--workers=")) {
+                try { workers = Integer.parseInt(a.substring("--workers=".length())); } catch (Exception ex) { System.err.println("Invalid --workers value: " + a); }
+                continue;
+            }
+            if (a.startsWith("--worker-heap=")) { workerHeap = a.substring("--worker-heap=".length()); continue; }
+            if (a.startsWith("--format=")) {
+                String v = a.substring("--format=".length());
+                if (v.equals("human") || v.equals("jsonl") || v.equals("csv")) format = v;
+                else System.err.println("Invalid --format value: " + a);
                 continue;
             }
-            
+            if (parseOption(a, opts)) { workerArgs.add(a); continue; }
+
             fileArgs.add(a);
         }
+        if (format != null && (serverAddress != null || debug)) {
+            // the server answers each client in its own report text, and a debug session has no reports
+            System.err.println("--format cannot be combined with " + (serverAddress != null ? "--server" : "--debug"));
+            return;
+        }
+        if (format == null) format = "human";
+        if (serverAddress != null) {
+            // daemon mode: keep this JVM (and its JIT/cache) alive and serve clients
+            try {
+                new TMServer(opts).serve(serverAddress);
+            } catch (Exception e) {
+                System.err.println("Server failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+            return;
+        }
+        if (worker) {
+            // child of a coordinator: serve requests over stdin/stdout, one run at a time
+            try {
+                new TMServer(opts, 1, true).serveStream(System.in, System.out);
+            } catch (Exception e) {
+                System.err.println("Worker failed: " + e.getMessage());
+            }
+            return;
+        }
         if (fileArgs.size() > 0) {
             inputs = new java.io.File[fileArgs.size()];
             for (int i = 0; i < fileArgs.size(); i++) inputs[i] = new java.io.File(fileArgs.get(i));
@@ -32,7 +84,7 @@ public class TMSimulator {
             if (inputs == null) inputs = new java.io.File[0];
         }
 
-        if (inputs.length == 0) {
+        if (!watch && inputs.length == 0) {
             System.err.println("No input files found. Provide .txt machine files as arguments or place them in the working directory.");
             return;
         }
@@ -40,102 +92,434 @@ public class TMSimulator {
         // Simple cache: file path -> (lastModified, template TM)
         final java.util.Map<String, CacheEntry> cache = new java.util.HashMap<>();
 
-        for (java.io.File f : inputs) {
-            try {
-                long last = f.lastModified();
-                CacheEntry entry = cache.get(f.getAbsolutePath());
-                if (entry == null || entry.lastModified != last) {
-                    entry = processFileBuildTemplate(f);
-                    entry.lastModified = last;
-                    cache.put(f.getAbsolutePath(), entry);
-                }
-
-                // create runnable instance from template
-                TM tm = entry.tmTemplate.cloneTemplate();
-                // build fast transition table for runtime using the parsed machine parameters
-                if (entry.nStates > 0 && entry.symbolsPerState > 0) {
-                    tm.buildTransitionTable(entry.nStates, entry.symbolsPerState);
+        // reports go through one large buffer drained by a background thread, so a long batch
+        // is not paced by per-line writes to stdout
+        TMReportWriter writer = new TMReportWriter(
+                java.nio.channels.Channels.newChannel(new java.io.FileOutputStream(java.io.FileDescriptor.out)), TMReportWriter.DEFAULT_BUFFER);
+        try (TMReportSink sink = TMReportSink.forFormat(format, writer)) {
+            if (watch) {
+                // keep running: re-run files as they change (a directory scan also picks up new .txt files)
+                java.io.File[] scanned = fileArgs.isEmpty() ? new java.io.File[]{cwd} : new java.io.File[0];
+                try {
+                    new TMWatcher(opts, inputs, scanned, sink).watch();
+                } catch (java.io.IOException e) {
+                    System.err.println("Watch failed: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
-                // initialize tape from file input if provided, otherwise use unary default
-                if (entry.initialInput != null) {
-                    tm.initializeTape(entry.initialInput);
-                } else {
-                    tm.initializeUnaryInput(defaultUnary);
+                return;
+            }
+            if (workers > 0) {
+                // shard the files across separate JVMs so each run gets its own heap
+                try {
+                    new TMCoordinator(workers, workerHeap, workerArgs).run(inputs, sink);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
-                tm.setCurrentState(0);
-                // per spec: run until the machine halts (no artificial step cap)
-                long start = System.nanoTime();
-                tm.run();
-                long end = System.nanoTime();
-                double elapsed = (end - start) / 1_000_000_000.0;
-
-                // report
-                System.out.println(f.getName());
-                final int LARGE_THRESHOLD = 1000; // if visited length larger, print "very large"
-                int visitedLen = tm.getVisitedLength();
-                String content = tm.getVisitedContentString();
-                if (visitedLen > LARGE_THRESHOLD) {
-                    System.out.println("output: very large");
-                } else {
-                    System.out.println("output:");
-                    System.out.println(content);
+                return;
+            }
+            for (java.io.File f : inputs) {
+                TMReport report;
+                try {
+                    if (debug) {
+                        CacheEntry entry = loadEntry(f, cache, opts);
+                        if (entry.ntmTemplate != null) throw new IllegalArgumentException("--debug does not support nondeterministic machines");
+                        if (entry.mtmTemplate != null) throw new IllegalArgumentException("--debug does not support multi-tape machines");
+                        // interactive time-travel session instead of a plain run
+                        System.out.println(f.getName());
+                        TMDebugger dbg = new TMDebugger(prepareMachine(entry, opts), debugBudget);
+                        dbg.interact(new java.io.BufferedReader(new java.io.InputStreamReader(System.in)), System.out);
+                        continue;
+                    }
+                    report = runFile(f, cache, opts, null);
+                } catch (Exception e) {
+                    System.err.println("Error processing " + f + ": " + e.getMessage());
+                    e.printStackTrace();
+                    report = TMReport.error(f.getName(), e);
                 }
-                System.out.println("output length: " + visitedLen);
-                System.out.println("sum of symbols: " + tm.getSumOfSymbols());
-                // preserve a trailing blank line to match expected output files
-                System.out.println();
-                // always print elapsed timing (printed to stdout so it's visible in terminal)
-                System.out.printf("elapsed (s): %.3f\n", elapsed);
-
-            } catch (Exception e) {
-                System.err.println("Error processing " + f + ": " + e.getMessage());
-                e.printStackTrace();
+                sink.write(report);
             }
+        } catch (java.io.IOException e) {
+            System.err.println("Writing reports failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parse and run one machine file with the given run options (the same
+     * flags the command line accepts); a failure is returned as an ERROR report.
+     */
+    public static TMReport report(java.io.File f, String... options) {
+        Options opts = parseOptions(options);
+        try {
+            return runFile(f, new java.util.HashMap<>(), opts, null);
+        } catch (Exception e) {
+            return TMReport.error(f.getName(), e);
+        }
+    }
+
+    /** Run options from command-line flags; IllegalArgumentException for a flag that is not a run option. */
+    static Options parseOptions(String... options) {
+        Options opts = new Options();
+        for (String a : options) {
+            if (!parseOption(a, opts)) throw new IllegalArgumentException("unknown option: " + a);
+        }
+        return opts;
+    }
+
+    /** Load (timing the parse) and run one file; onStart is passed on to runReport. */
+    static TMReport runFile(java.io.File f, java.util.Map<String, CacheEntry> cache, Options opts, java.util.function.Consumer<Runnable> onStart) throws Exception {
+        long parseStart = System.nanoTime();
+        CacheEntry entry = loadEntry(f, cache, opts);
+        double parseSeconds = (System.nanoTime() - parseStart) / 1_000_000_000.0;
+        TMReport report = runReport(f.getName(), entry, opts, onStart);
+        report.parseSeconds = parseSeconds;
+        return report;
+    }
+
+    /** Per-run settings shared by the command line, the server and its clients. */
+    static class Options {
+        int defaultUnary = 1;
+        boolean optimize = false;
+        boolean useTable = true;
+        String traceDir = null;
+        int maxDepth = 1_000_000;
+        long maxConfigs = 10_000_000L;
+        String inputFile = null;
+        boolean inputBinary = false;
+        String numeric = null;
+        long maxSteps = 0; // 0 = run until the machine halts
+
+        Options copy() {
+            Options o = new Options();
+            o.defaultUnary = defaultUnary;
+            o.optimize = optimize;
+            o.useTable = useTable;
+            o.traceDir = traceDir;
+            o.maxDepth = maxDepth;
+            o.maxConfigs = maxConfigs;
+            o.inputFile = inputFile;
+            o.inputBinary = inputBinary;
+            o.numeric = numeric;
+            o.maxSteps = maxSteps;
+            return o;
+        }
+    }
+
+    /** Apply a run option flag to opts; returns false if the argument is not an option. */
+    static boolean parseOption(String a, Options opts) {
+        if (a.startsWith("--unary=")) {
+            try { opts.defaultUnary = Integer.parseInt(a.substring("--unary=".length())); } catch (Exception ex) { System.err.println("Invalid --unary value: " + a); }
+            return true;
+        }
+        if (a.equals("--optimize")) { opts.optimize = true; return true; }
+        if (a.equals("--no-table")) { opts.useTable = false; return true; }
+        if (a.startsWith("--trace=")) { opts.traceDir = a.substring("--trace=".length()); return true; }
+        if (a.startsWith("--max-depth=")) {
+            try { opts.maxDepth = Integer.parseInt(a.substring("--max-depth=".length())); } catch (Exception ex) { System.err.println("Invalid --max-depth value: " + a); }
+            return true;
+        }
+        if (a.startsWith("--max-configs=")) {
+            try { opts.maxConfigs = Long.parseLong(a.substring("--max-configs=".length())); } catch (Exception ex) { System.err.println("Invalid --max-configs value: " + a); }
+            return true;
+        }
+        if (a.startsWith("--max-steps=")) {
+            try { opts.maxSteps = Long.parseLong(a.substring("--max-steps=".length())); } catch (Exception ex) { System.err.println("Invalid --max-steps value: " + a); }
+            return true;
+        }
+        if (a.startsWith("--input-file=")) { opts.inputFile = a.substring("--input-file=".length()); return true; }
+        if (a.startsWith("--input-format=")) {
+            String v = a.substring("--input-format=".length());
+            if (v.equals("binary")) opts.inputBinary = true;
+            else if (v.equals("digits")) opts.inputBinary = false;
+            else System.err.println("Invalid --input-format value: " + a);
+            return true;
+        }
+        if (a.startsWith("--numeric=")) {
+            String v = a.substring("--numeric=".length());
+            if (v.equals("decimal") || v.equals("binary") || v.equals("unary")) opts.numeric = v;
+            else System.err.println("Invalid --numeric value: " + a);
+            return true;
+        }
+        return false;
+    }
+
+    /** Return the cached template for f, re-parsing it when the file changed since it was cached. */
+    static CacheEntry loadEntry(java.io.File f, java.util.Map<String, CacheEntry> cache, Options opts) throws Exception {
+        String key = f.getAbsolutePath() + (opts.optimize ? "#optimized" : "");
+        long last = f.lastModified();
+        CacheEntry entry = cache.get(key);
+        if (entry == null || entry.lastModified != last) {
+            entry = processFileBuildTemplate(f);
+            entry.lastModified = last;
+            // optional optimizer stage: prune unreachable states and merge equivalent ones
+            if (opts.optimize) optimizeEntry(entry);
+            cache.put(key, entry);
+        }
+        return entry;
+    }
+
+    /** Create a runnable instance of the cached machine with its tape initialized and state 0 set. */
+    static TM prepareMachine(CacheEntry entry, Options opts) throws java.io.IOException {
+        // create runnable instance from template
+        TM tm = entry.tmTemplate.cloneTemplate();
+        // build fast transition table for runtime using the parsed machine parameters
+        if (opts.useTable && entry.nStates > 0 && entry.symbolsPerState > 0) {
+            tm.buildTransitionTable(entry.nStates, entry.symbolsPerState);
+        }
+        // initialize tape from --input-file, the machine file's input line, or the unary default
+        if (opts.inputFile != null) {
+            tm.initializeTape(new java.io.File(opts.inputFile), opts.inputBinary, entry.symbolsPerState);
+        } else if (entry.initialInput != null) {
+            tm.initializeTape(entry.initialInput);
+        } else {
+            tm.initializeUnaryInput(opts.defaultUnary);
+        }
+        tm.setCurrentState(0);
+        tm.setMaxSteps(opts.maxSteps);
+        return tm;
+    }
+
+    /** Run a fresh instance of the cached machine and return the formatted report. */
+    static String runEntry(String name, CacheEntry entry, Options opts) throws java.io.IOException {
+        return runEntry(name, entry, opts, null);
+    }
+
+    /** As above; onStart (if not null) receives an action that cancels the machine, before it runs. */
+    static String runEntry(String name, CacheEntry entry, Options opts, java.util.function.Consumer<Runnable> onStart) throws java.io.IOException {
+        return runReport(name, entry, opts, onStart).toHuman();
+    }
+
+    /** Run a fresh instance of the cached machine and return its report. */
+    static TMReport runReport(String name, CacheEntry entry, Options opts, java.util.function.Consumer<Runnable> onStart) throws java.io.IOException {
+        // the search is bounded by --max-depth/--max-configs rather than cancelled
+        if (entry.ntmTemplate != null) return runNondeterministic(name, entry, opts);
+        if (entry.mtmTemplate != null) return runMultiTape(name, entry, opts, onStart);
+        TM tm = prepareMachine(entry, opts);
+        if (onStart != null) onStart.accept(tm::cancel);
+        return runPrepared(name, entry, opts, tm);
+    }
+
+    /** Run a machine from prepareMachine(entry, opts) to completion and return its report. */
+    static TMReport runPrepared(String name, CacheEntry entry, Options opts, TM tm) throws java.io.IOException {
+        // optional binary trace of every transition taken, written to <traceDir>/<name>.trace
+        TMTrace trace = null;
+        if (opts.traceDir != null) {
+            java.io.File dir = new java.io.File(opts.traceDir);
+            dir.mkdirs();
+            trace = TMTrace.create(new java.io.File(dir, name + ".trace"), tm, entry.nStates, entry.symbolsPerState);
+            tm.setTracer(trace);
+        }
+        // per spec: run until the machine halts, unless --max-steps sets a cap
+        long start = System.nanoTime();
+        try {
+            tm.run();
+        } finally {
+            if (trace != null) trace.close();
+        }
+        long end = System.nanoTime();
+
+        TMReport r = new TMReport(name);
+        r.runSeconds = (end - start) / 1_000_000_000.0;
+        r.steps = tm.getStepCount();
+        r.setOutput(tm.getVisitedLength(), tm::getVisitedContentString, tm.getSumOfSymbols());
+        if (opts.numeric != null) r.outputValue = numericValue(tm, opts.numeric, TMReport.LARGE_THRESHOLD);
+        r.statesRemoved = entry.statesRemoved;
+        return r;
+    }
+
+    /** The tape output read as a number in the given interpretation, or "very large" past maxDigits digits. */
+    private static String numericValue(TM tm, String kind, int maxDigits) {
+        java.math.BigInteger v;
+        try {
+            if (kind.equals("unary")) return Long.toString(tm.getOutputAsUnary());
+            v = kind.equals("binary") ? tm.getOutputAsBinary() : tm.getOutputAsBigInteger();
+        } catch (IllegalArgumentException e) {
+            return "n/a (" + e.getMessage() + ")";
+        }
+        // log10(2) ~ 0.30103: estimate the digit count without converting
+        if (v.bitLength() * 0.30103 > maxDigits) return "very large (" + v.bitLength() + " bits)";
+        return v.toString();
+    }
+
+    /** Run a k-tape machine; the usual output fields describe tape 0, with a summary of each other tape. */
+    private static TMReport runMultiTape(String name, CacheEntry entry, Options opts, java.util.function.Consumer<Runnable> onStart) throws java.io.IOException {
+        if (opts.traceDir != null) throw new IllegalArgumentException("--trace does not support multi-tape machines");
+        if (opts.numeric != null) throw new IllegalArgumentException("--numeric does not support multi-tape machines");
+        if (opts.optimize) throw new IllegalArgumentException("--optimize does not support multi-tape machines");
+        if (!opts.useTable) throw new IllegalArgumentException("--no-table does not support multi-tape machines");
+        MTM mtm = entry.mtmTemplate.cloneTemplate();
+        if (opts.inputFile != null) mtm.initializeTape(new java.io.File(opts.inputFile), opts.inputBinary, entry.symbolsPerState);
+        else if (entry.initialInput != null) mtm.initializeTape(entry.initialInput);
+        else mtm.initializeUnaryInput(opts.defaultUnary);
+        mtm.setCurrentState(0);
+        mtm.setMaxSteps(opts.maxSteps);
+        if (onStart != null) onStart.accept(mtm::cancel);
+        long start = System.nanoTime();
+        mtm.run();
+        long end = System.nanoTime();
+
+        TMReport r = new TMReport(name);
+        r.runSeconds = (end - start) / 1_000_000_000.0;
+        r.steps = mtm.getStepCount();
+        r.setOutput(mtm.getVisitedLength(0), () -> mtm.getVisitedContentString(0), mtm.getSumOfSymbols(0));
+        int extra = mtm.getTapeCount() - 1;
+        r.tapeLengths = new int[extra];
+        r.tapeSums = new long[extra];
+        for (int t = 1; t <= extra; t++) {
+            r.tapeLengths[t - 1] = mtm.getVisitedLength(t);
+            r.tapeSums[t - 1] = mtm.getSumOfSymbols(t);
+        }
+        return r;
+    }
+
+    /** Search a nondeterministic machine's configurations on all cores and report the outcome. */
+    private static TMReport runNondeterministic(String name, CacheEntry entry, Options opts) throws java.io.IOException {
+        int[] input = opts.inputFile != null ? TMTapeFile.load(new java.io.File(opts.inputFile), opts.inputBinary, entry.symbolsPerState) : entry.initialInput;
+        if (input == null) {
+            input = new int[Math.max(0, opts.defaultUnary)];
+            java.util.Arrays.fill(input, 1);
+        }
+        long start = System.nanoTime();
+        NTM.Result res = entry.ntmTemplate.search(input, opts.maxDepth, opts.maxConfigs, java.util.concurrent.ForkJoinPool.commonPool());
+        long end = System.nanoTime();
+
+        TMReport r = new TMReport(name);
+        r.runSeconds = (end - start) / 1_000_000_000.0;
+        switch (res.status) {
+            case ACCEPTED: r.status = TMReport.Status.ACCEPTED; break;
+            case REJECTED: r.status = TMReport.Status.REJECTED; break;
+            default: r.status = TMReport.Status.UNDECIDED;
         }
+        r.depth = res.depth;
+        r.explored = res.explored;
+        r.hasOutput = res.status == NTM.Result.Status.ACCEPTED;
+        if (r.hasOutput) r.setOutput(res.getVisitedLength(), res::getVisitedContentString, res.getSumOfSymbols());
+        return r;
     }
 
     private static CacheEntry processFileBuildTemplate(java.io.File f) throws Exception {
-        java.util.List<String> lines = java.nio.file.Files.readAllLines(f.toPath());
+        return processLinesBuildTemplate(f.getName(), java.nio.file.Files.readAllLines(f.toPath()));
+    }
+
+    /** Parse a machine definition given as raw lines (file contents or inline text). */
+    static CacheEntry processLinesBuildTemplate(String name, java.util.List<String> lines) {
         java.util.List<String> trimmed = new java.util.ArrayList<>();
         for (String L : lines) {
             String t = L.trim();
             if (!t.isEmpty()) trimmed.add(t);
         }
-        if (trimmed.size() < 2) throw new IllegalArgumentException("file too short: " + f.getName());
+        if (trimmed.size() < 2) throw new IllegalArgumentException("file too short: " + name);
 
         int idx = 0;
         int nStates = Integer.parseInt(trimmed.get(idx++));
-        int sCount = Integer.parseInt(trimmed.get(idx++)); // number of input symbols (1..sCount)
+        // line 2: number of input symbols (1..sCount), optionally followed by the number of tapes
+        String[] symbolLine = trimmed.get(idx++).split("\\s+");
+        int sCount = Integer.parseInt(symbolLine[0]);
+        int tapes = symbolLine.length > 1 ? Integer.parseInt(symbolLine[1]) : 1;
+        if (tapes < 1) throw new IllegalArgumentException("bad tape count in " + name + ": " + tapes);
+        boolean multiTape = tapes > 1;
+
+        // transitions expected for states 0 .. nStates-2 and symbols 0 .. sCount (including blank 0);
+        // a k-tape machine has one line per tuple of k symbols, tape 0's symbol varying slowest
+        int symbolsPerState = sCount + 1;
+        int tuplesPerState = 1;
+        for (int t = 0; t < tapes; t++) tuplesPerState = Math.multiplyExact(tuplesPerState, symbolsPerState);
+        int expected = Math.multiplyExact(nStates - 1, tuplesPerState);
+        if (trimmed.size() - idx < expected) throw new IllegalArgumentException("not enough transition lines in " + name);
+
+        // a line listing alternatives ("1,1,R|2,0,L") or no transition ("-") makes the machine nondeterministic
+        boolean nondeterministic = false;
+        for (int i = idx; i < idx + expected; i++) {
+            String t = trimmed.get(i);
+            if (t.indexOf('|') >= 0 || t.equals("-")) nondeterministic = true;
+        }
+
+        if (nondeterministic && multiTape) throw new IllegalArgumentException("nondeterministic multi-tape machines are not supported: " + name);
+
+        if (multiTape) {
+            MTM mtm = new MTM(tapes);
+            for (int i = 0; i < nStates; i++) {
+                MTMState st = new MTMState(i, tapes, symbolsPerState);
+                if (i == nStates - 1) st.setHalting(true);
+                mtm.addState(st);
+            }
+            // each line: next,write_0,...,write_k-1,dir_0,...,dir_k-1
+            int[] read = new int[tapes];
+            int[] write = new int[tapes];
+            char[] dirs = new char[tapes];
+            for (int state = 0; state <= nStates - 2; state++) {
+                for (int tuple = 0; tuple < tuplesPerState; tuple++) {
+                    String line = trimmed.get(idx++);
+                    String[] parts = line.split(",");
+                    if (parts.length < 1 + 2 * tapes) throw new IllegalArgumentException("bad transition line: " + line);
+                    for (int t = tapes - 1, rest = tuple; t >= 0; t--, rest /= symbolsPerState) read[t] = rest % symbolsPerState;
+                    for (int t = 0; t < tapes; t++) {
+                        write[t] = Integer.parseInt(parts[1 + t].trim());
+                        dirs[t] = parts[1 + tapes + t].trim().charAt(0);
+                    }
+                    mtm.getState(state).addTransition(read, Integer.parseInt(parts[0].trim()), write, dirs);
+                }
+            }
+            mtm.setBlankSymbol(0);
+            mtm.compile(nStates, symbolsPerState);
+            CacheEntry entry = new CacheEntry(0L, null, parseInputLine(lines, idx, sCount), nStates, symbolsPerState);
+            entry.mtmTemplate = mtm;
+            return entry;
+        }
 
-        TM tm = new TM();
+        TM tm = nondeterministic ? null : new TM();
+        NTM ntm = nondeterministic ? new NTM() : null;
         // create states 0..nStates-1
         for (int i = 0; i < nStates; i++) {
-            TMState st = new TMState(i);
+            TMStateInterface st = nondeterministic ? new NTMState(i) : new TMState(i);
             if (i == nStates - 1) st.setHalting(true);
-            tm.addState(st);
+            if (nondeterministic) ntm.addState(st); else tm.addState(st);
         }
 
-        // transitions expected for states 0 .. nStates-2 and symbols 0 .. sCount (including blank 0)
-        int symbolsPerState = sCount + 1;
-        int expected = (nStates - 1) * symbolsPerState;
-        if (trimmed.size() - idx < expected) throw new IllegalArgumentException("not enough transition lines in " + f.getName());
-
         for (int state = 0; state <= nStates - 2; state++) {
             for (int sym = 0; sym <= sCount; sym++) {
                 String line = trimmed.get(idx++);
-                String[] parts = line.split(",");
-                if (parts.length < 3) throw new IllegalArgumentException("bad transition line: " + line);
-                int next = Integer.parseInt(parts[0].trim());
-                int write = Integer.parseInt(parts[1].trim());
-                char dir = parts[2].trim().charAt(0);
-                TMStateInterface st = tm.getState(state);
-                st.addTransition(sym, next, write, dir);
+                TMStateInterface st = nondeterministic ? ntm.getState(state) : tm.getState(state);
+                for (String alt : nondeterministic ? line.split("\\|") : new String[]{line}) {
+                    // "-" marks a symbol with no alternatives in a nondeterministic machine
+                    if (nondeterministic && alt.trim().equals("-")) continue;
+                    String[] parts = alt.split(",");
+                    if (parts.length < 3) throw new IllegalArgumentException("bad transition line: " + line);
+                    int next = Integer.parseInt(parts[0].trim());
+                    int write = Integer.parseInt(parts[1].trim());
+                    char dir = parts[2].trim().charAt(0);
+                    st.addTransition(sym, next, write, dir);
+                }
             }
         }
 
         // set blank symbol to 0 by definition
-        tm.setBlankSymbol(0);
+        if (nondeterministic) ntm.setBlankSymbol(0); else tm.setBlankSymbol(0);
+
+        int[] initialInput = parseInputLine(lines, idx, sCount);
 
+        CacheEntry entry = new CacheEntry(0L, tm, initialInput, nStates, symbolsPerState);
+        if (nondeterministic) {
+            ntm.compile(nStates, symbolsPerState);
+            entry.ntmTemplate = ntm;
+        }
+        return entry;
+    }
+
+    /** Replace the entry's template with its optimized form and record how many states were dropped. */
+    static void optimizeEntry(CacheEntry entry) {
+        if (entry.tmTemplate == null) return; // nondeterministic and multi-tape machines are not optimized
+        TMOptimizer.Result r = TMOptimizer.optimize(entry.tmTemplate, entry.nStates, entry.symbolsPerState);
+        entry.tmTemplate = r.machine;
+        entry.nStates = r.nStates;
+        entry.statesRemoved = r.statesRemoved;
+    }
+
+    /**
+     * Input tape from the line after the idx-th non-empty line (the last
+     * transition), or null when a unary machine (sCount == 1) has no input line.
+     */
+    static int[] parseInputLine(java.util.List<String> lines, int idx, int sCount) {
         // parse input string if present. We must detect an explicit input line
         // (possibly blank) vs no input line at all. Use the original raw lines
         // to decide: find the raw index of the last consumed non-empty line,
@@ -152,25 +536,30 @@ public class TMSimulator {
         if (rawIndexOfLastConsumed >= 0 && rawIndexOfLastConsumed + 1 < lines.size()) {
             // There is a raw line after the last non-empty transition line -> explicit input (may be blank)
             String inputLine = lines.get(rawIndexOfLastConsumed + 1).trim();
-            java.util.List<Integer> digits = new java.util.ArrayList<>();
-            for (char c : inputLine.toCharArray()) if (Character.isDigit(c)) digits.add(c - '0');
-            initialInput = new int[digits.size()];
-            for (int i = 0; i < digits.size(); i++) initialInput[i] = digits.get(i);
+            int nDigits = 0;
+            for (int i = 0; i < inputLine.length(); i++) if (Character.isDigit(inputLine.charAt(i))) nDigits++;
+            initialInput = new int[nDigits];
+            for (int i = 0, k = 0; i < inputLine.length(); i++) {
+                char c = inputLine.charAt(i);
+                if (Character.isDigit(c)) initialInput[k++] = c - '0';
+            }
         } else {
             // no explicit input line -> heuristically treat unary machines (sCount==1)
             // as using the unary default, otherwise treat as explicit empty input.
             if (sCount == 1) initialInput = null; else initialInput = new int[0];
         }
-
-        return new CacheEntry(0L, tm, initialInput, nStates, symbolsPerState);
+        return initialInput;
     }
 
-    private static class CacheEntry {
+    static class CacheEntry {
         long lastModified;
         TM tmTemplate;
         int[] initialInput;
         int nStates;
         int symbolsPerState;
+        int statesRemoved = -1; // -1 when the optimizer did not run
+        NTM ntmTemplate = null; // set (and tmTemplate null) for nondeterministic machines
+        MTM mtmTemplate = null; // set (and tmTemplate null) for multi-tape machines
         CacheEntry(long lastModified, TM tmTemplate, int[] initialInput, int nStates, int symbolsPerState) { this.lastModified = lastModified; this.tmTemplate = tmTemplate; this.initialInput = initialInput; this.nStates = nStates; this.symbolsPerState = symbolsPerState; }
     }
 
@@ -36,4 +36,20 @@ public interface TMStateInterface {
 	/** Get the direction ('L'/'R'/'N') for the given read symbol. */
 	char getDirection(int readSymbol);
 
+	/** Number of tapes the transitions of this state read; 1 unless overridden. */
+	default int getTapeCount() { return 1; }
+
+	/**
+	 * Add a transition of a k-tape machine: when the heads read `readSymbols`
+	 * (one per tape), write `writeSymbols`, move each head by `directions`
+	 * ('L', 'R' or 'S' to stay) and go to `nextStateId`. Single-tape states
+	 * accept tuples of length 1.
+	 */
+	default void addTransition(int[] readSymbols, int nextStateId, int[] writeSymbols, char[] directions) {
+		if (readSymbols.length != 1 || writeSymbols.length != 1 || directions.length != 1) {
+			throw new UnsupportedOperationException("state " + getId() + " has a single tape");
+		}
+		addTransition(readSymbols[0], nextStateId, writeSymbols[0], directions[0]);
+	}
+
 }
@@ -0,0 +1,80 @@
+package tm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads an initial tape from a separate file ({@code --input-file=PATH}).
+ * The file is memory-mapped and decoded in bulk straight into the tape
+ * array, so a tape of hundreds of MB never passes through boxed lists.
+ *
+ * Two formats are supported: digits (one ASCII digit per cell, any other
+ * byte such as a newline is skipped, like the input line of a machine file)
+ * and binary (one unsigned byte per cell).
+ */
+final class TMTapeFile {
+
+    private static final int CHUNK = 1 << 16;
+    private static final long MAP_SIZE = 1L << 30;
+
+    private TMTapeFile() { }
+
+    /** Upper bound on the number of cells in f; throws if it cannot fit in a tape array. */
+    static int maxCells(File f) throws IOException {
+        if (!f.isFile()) throw new IOException("input file not found: " + f);
+        long len = f.length();
+        if (len > Integer.MAX_VALUE - 64) throw new IOException("input file too large for a single tape: " + f);
+        return (int) len;
+    }
+
+    /**
+     * Decode f into dest starting at destPos; returns the number of cells written.
+     * Cells must be below symbols (the machine's alphabet size); 0 skips the check.
+     */
+    static int decode(File f, boolean binary, int[] dest, int destPos, int symbols) throws IOException {
+        int limit = symbols > 0 ? symbols : Integer.MAX_VALUE;
+        byte[] chunk = new byte[CHUNK];
+        int p = destPos;
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            for (long off = 0; off < size; off += MAP_SIZE) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, off, Math.min(MAP_SIZE, size - off));
+                while (buf.hasRemaining()) {
+                    int n = Math.min(CHUNK, buf.remaining());
+                    buf.get(chunk, 0, n);
+                    if (binary) {
+                        for (int i = 0; i < n; i++) {
+                            int v = chunk[i] & 0xff;
+                            if (v >= limit) throw outsideAlphabet(f, v, p - destPos, symbols);
+                            dest[p++] = v;
+                        }
+                    } else {
+                        for (int i = 0; i < n; i++) {
+                            int d = chunk[i] - '0';
+                            if (d < 0 || d > 9) continue;
+                            if (d >= limit) throw outsideAlphabet(f, d, p - destPos, symbols);
+                            dest[p++] = d;
+                        }
+                    }
+                }
+            }
+        }
+        return p - destPos;
+    }
+
+    /** Read f into an exactly-sized array (used where the tape is not a plain int array). */
+    static int[] load(File f, boolean binary, int symbols) throws IOException {
+        int[] cells = new int[maxCells(f)];
+        int n = decode(f, binary, cells, 0, symbols);
+        return n == cells.length ? cells : java.util.Arrays.copyOf(cells, n);
+    }
+
+    private static IllegalArgumentException outsideAlphabet(File f, int symbol, int cell, int symbols) {
+        return new IllegalArgumentException("input file " + f + ": symbol " + symbol + " at cell " + cell
+                + " is outside the machine's alphabet (0.." + (symbols - 1) + ")");
+    }
+
+}
@@ -0,0 +1,258 @@
+package tm;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary execution trace. A trace file starts with a header holding
+ * the machine's transitions and the initial configuration, followed by one
+ * entry per step: the transition index (state * symbolsPerState + read),
+ * zigzag delta-encoded against the previous index and written as a varint.
+ * Small machines therefore cost one byte per step. Steps are buffered in a
+ * preallocated array and streamed to disk when it fills.
+ *
+ * Use {@link TM#setTracer} to record and {@link Reader} / {@link Replay}
+ * (or the {@link TMTraceTool} command line) to read traces back.
+ */
+public class TMTrace implements Closeable {
+
+    static final int MAGIC = 0x544d5452; // "TMTR"
+    static final int VERSION = 1;
+
+    private final FileChannel channel;
+    private final byte[] buf = new byte[1 << 20];
+    private int pos = 0;
+    private final int symbolsPerState;
+    private final long stepCountOffset;
+    private int prevIndex = 0;
+    private long steps = 0;
+
+    private TMTrace(FileChannel channel, int symbolsPerState, long stepCountOffset) {
+        this.channel = channel;
+        this.symbolsPerState = symbolsPerState;
+        this.stepCountOffset = stepCountOffset;
+    }
+
+    /**
+     * Create a trace file for tm, which must already have its tape initialized
+     * and its start state set. The header snapshots states 0..nStates-1.
+     */
+    public static TMTrace create(File file, TM tm, int nStates, int symbolsPerState) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream h = new DataOutputStream(bytes);
+        h.writeInt(MAGIC);
+        h.writeInt(VERSION);
+        h.writeInt(nStates);
+        h.writeInt(symbolsPerState);
+        for (int s = 0; s < nStates; s++) {
+            TMStateInterface st = tm.getState(s);
+            h.writeBoolean(st != null && st.isHalting());
+            for (int sym = 0; sym < symbolsPerState; sym++) {
+                boolean has = st != null && st.hasTransition(sym);
+                h.writeInt(has ? st.getNextState(sym) : -1);
+                h.writeInt(has ? st.getWriteSymbol(sym) : 0);
+                h.writeChar(has ? st.getDirection(sym) : 'N');
+            }
+        }
+        int[] cells = tm.getVisitedCells();
+        h.writeInt(tm.getBlankSymbol());
+        h.writeInt(tm.getCurrentState());
+        h.writeInt(tm.getHeadPosition());
+        h.writeInt(cells.length == 0 ? 0 : tm.getMinVisited());
+        h.writeInt(cells.length);
+        for (int c : cells) h.writeInt(c);
+        long stepCountOffset = bytes.size();
+        h.writeLong(-1L); // patched with the real step count on close
+        h.flush();
+
+        FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.wrap(bytes.toByteArray());
+        while (header.hasRemaining()) ch.write(header);
+        return new TMTrace(ch, symbolsPerState, stepCountOffset);
+    }
+
+    /** Record one transition taken from state after reading read. Called by TM.step(). */
+    void record(int state, int read) {
+        int idx = state * symbolsPerState + read;
+        int d = idx - prevIndex;
+        prevIndex = idx;
+        int z = (d << 1) ^ (d >> 31);
+        if (pos > buf.length - 5) flushBuffer();
+        while ((z & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((z & 0x7F) | 0x80);
+            z >>>= 7;
+        }
+        buf[pos++] = (byte) z;
+        steps++;
+    }
+
+    /** Number of steps recorded so far. */
+    public long getSteps() { return steps; }
+
+    private void flushBuffer() {
+        try {
+            ByteBuffer bb = ByteBuffer.wrap(buf, 0, pos);
+            while (bb.hasRemaining()) channel.write(bb);
+            pos = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        ByteBuffer count = ByteBuffer.allocate(8).putLong(0, steps);
+        channel.write(count, stepCountOffset);
+        channel.close();
+    }
+
+    /** Sequential reader for a trace file: header fields plus the stream of transition indices. */
+    public static class Reader implements Closeable {
+        final int nStates;
+        final int symbolsPerState;
+        final boolean[] halting;
+        final int[] next;
+        final int[] write;
+        final char[] dir;
+        final int blankSymbol;
+        final int startState;
+        final int startHead;
+        final int origin;
+        final int[] cells;
+        /** Step count written on close, or -1 if the recording was cut short. */
+        final long recordedSteps;
+        private final DataInputStream in;
+        private int prevIndex = 0;
+
+        public Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            if (in.readInt() != MAGIC) { in.close(); throw new IOException("not a TM trace file: " + file); }
+            int version = in.readInt();
+            if (version != VERSION) { in.close(); throw new IOException("unsupported trace version " + version + " in " + file); }
+            nStates = in.readInt();
+            symbolsPerState = in.readInt();
+            halting = new boolean[nStates];
+            next = new int[nStates * symbolsPerState];
+            write = new int[nStates * symbolsPerState];
+            dir = new char[nStates * symbolsPerState];
+            for (int s = 0; s < nStates; s++) {
+                halting[s] = in.readBoolean();
+                for (int sym = 0; sym < symbolsPerState; sym++) {
+                    int i = s * symbolsPerState + sym;
+                    next[i] = in.readInt();
+                    write[i] = in.readInt();
+                    dir[i] = in.readChar();
+                }
+            }
+            blankSymbol = in.readInt();
+            startState = in.readInt();
+            startHead = in.readInt();
+            origin = in.readInt();
+            cells = new int[in.readInt()];
+            for (int i = 0; i < cells.length; i++) cells[i] = in.readInt();
+            recordedSteps = in.readLong();
+        }
+
+        /** Return the next transition index, or -1 at the end of the trace. */
+        public int next() throws IOException {
+            int z = 0, shift = 0, b;
+            do {
+                b = in.read();
+                if (b < 0) {
+                    if (shift == 0) return -1;
+                    throw new EOFException("truncated trace entry");
+                }
+                z |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            int d = (z >>> 1) ^ -(z & 1);
+            prevIndex += d;
+            return prevIndex;
+        }
+
+        /** True if both traces were recorded from the same machine and initial configuration. */
+        boolean sameStart(Reader o) {
+            return nStates == o.nStates && symbolsPerState == o.symbolsPerState
+                    && java.util.Arrays.equals(halting, o.halting) && java.util.Arrays.equals(next, o.next)
+                    && java.util.Arrays.equals(write, o.write) && java.util.Arrays.equals(dir, o.dir)
+                    && blankSymbol == o.blankSymbol && startState == o.startState && startHead == o.startHead
+                    && origin == o.origin && java.util.Arrays.equals(cells, o.cells);
+        }
+
+        @Override
+        public void close() throws IOException { in.close(); }
+    }
+
+    /**
+     * Rebuilds configurations by applying recorded transitions to the initial
+     * tape stored in a trace header. Each recorded (state, read) pair is checked
+     * against the reconstructed configuration, so a trace that does not match
+     * its own machine is reported rather than silently replayed.
+     */
+    public static class Replay {
+        private final Reader trace;
+        private final TM tape = new TM();
+        private long step = 0;
+
+        public Replay(Reader trace) {
+            this.trace = trace;
+            tape.setBlankSymbol(trace.blankSymbol);
+            tape.initializeTape(trace.cells);
+            tape.setHeadPosition(trace.startHead - trace.origin);
+            tape.setCurrentState(trace.startState);
+        }
+
+        /** Apply the given transition index; throws IllegalStateException if it does not fit the configuration. */
+        public void apply(int idx) {
+            int state = idx / trace.symbolsPerState;
+            int read = idx % trace.symbolsPerState;
+            if (state != tape.getCurrentState() || read != tape.readTape()) {
+                throw new IllegalStateException("trace inconsistent at step " + step + ": recorded state " + state
+                        + " reading " + read + ", replay is in state " + tape.getCurrentState() + " reading " + tape.readTape());
+            }
+            if (idx >= trace.next.length || trace.next[idx] < 0) {
+                throw new IllegalStateException("trace uses undefined transition at step " + step + ": state " + state + " reading " + read);
+            }
+            tape.writeTape(trace.write[idx]);
+            char d = trace.dir[idx];
+            if (d == 'L') tape.setHeadPosition(tape.getHeadPosition() - 1);
+            else if (d == 'R') tape.setHeadPosition(tape.getHeadPosition() + 1);
+            tape.setCurrentState(trace.next[idx]);
+            tape.readTape(); // mark the new head cell as visited, as TM.step() does
+            step++;
+        }
+
+        /** Advance until step k (or the end of the trace); returns false if the trace ended first. */
+        public boolean advanceTo(long k) throws IOException {
+            while (step < k) {
+                int idx = trace.next();
+                if (idx < 0) return false;
+                apply(idx);
+            }
+            return true;
+        }
+
+        public long getStep() { return step; }
+
+        /** Describe the current configuration: step, state, head position and visited tape. */
+        public String describe() {
+            return "step: " + step + "\n"
+                    + "state: " + tape.getCurrentState() + "\n"
+                    + "head: " + (tape.getHeadPosition() + trace.origin) + "\n"
+                    + "tape: " + tape.getVisitedContentString() + "\n";
+        }
+    }
+
+}
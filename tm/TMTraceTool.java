@@ -0,0 +1,80 @@
+package tm;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Command line for execution traces written with {@code TMSimulator --trace=DIR}.
+ *
+ * <pre>
+ * java -cp . tm.TMTraceTool replay TRACE [STEP]   configuration at STEP (default: last step)
+ * java -cp . tm.TMTraceTool diff TRACE_A TRACE_B  first step where two runs diverge
+ * </pre>
+ */
+public class TMTraceTool {
+
+    public static void main(String[] args) {
+        try {
+            if (args.length >= 2 && args[0].equals("replay")) {
+                long step = args.length >= 3 ? Long.parseLong(args[2]) : Long.MAX_VALUE;
+                System.out.print(replay(new File(args[1]), step));
+            } else if (args.length == 3 && args[0].equals("diff")) {
+                String result = diff(new File(args[1]), new File(args[2]));
+                System.out.print(result);
+                if (!result.startsWith("identical")) System.exit(1);
+            } else {
+                System.err.println("usage: TMTraceTool replay TRACE [STEP] | diff TRACE_A TRACE_B");
+                System.exit(2);
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /** Reconstruct the configuration after step steps (or the final one if the trace is shorter). */
+    public static String replay(File file, long step) throws IOException {
+        try (TMTrace.Reader r = new TMTrace.Reader(file)) {
+            TMTrace.Replay replay = new TMTrace.Replay(r);
+            boolean reached = replay.advanceTo(step);
+            String note = reached ? "" : "(trace ends after " + replay.getStep() + " steps)\n";
+            return note + replay.describe();
+        }
+    }
+
+    /** Compare two traces step by step and describe the first divergence. */
+    public static String diff(File a, File b) throws IOException {
+        try (TMTrace.Reader ra = new TMTrace.Reader(a); TMTrace.Reader rb = new TMTrace.Reader(b)) {
+            StringBuilder out = new StringBuilder();
+            if (!ra.sameStart(rb)) out.append("note: traces start from different machines or inputs\n");
+            TMTrace.Replay pa = new TMTrace.Replay(ra);
+            TMTrace.Replay pb = new TMTrace.Replay(rb);
+            long step = 0;
+            while (true) {
+                int ia = ra.next();
+                int ib = rb.next();
+                if (ia < 0 && ib < 0) {
+                    if (out.length() == 0) return "identical (" + step + " steps)\n";
+                    return out.append("identical transitions (").append(step).append(" steps)\n").toString();
+                }
+                if (ia != ib) {
+                    out.append("first divergence at step ").append(step).append('\n');
+                    out.append(a.getName()).append(": ").append(describeIndex(ra, ia)).append('\n');
+                    out.append(b.getName()).append(": ").append(describeIndex(rb, ib)).append('\n');
+                    out.append("-- ").append(a.getName()).append(" before step ").append(step).append('\n').append(pa.describe());
+                    out.append("-- ").append(b.getName()).append(" before step ").append(step).append('\n').append(pb.describe());
+                    return out.toString();
+                }
+                pa.apply(ia);
+                pb.apply(ib);
+                step++;
+            }
+        }
+    }
+
+    private static String describeIndex(TMTrace.Reader r, int idx) {
+        if (idx < 0) return "trace ended";
+        return "state " + (idx / r.symbolsPerState) + " reading " + (idx % r.symbolsPerState);
+    }
+
+}
@@ -0,0 +1,157 @@
+package tm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Watch mode ({@code TMSimulator --watch}). Runs every input once, then keeps
+ * the JVM alive and watches the inputs' directories. When a machine file is
+ * created or modified only that file is re-parsed and re-run; the parsed
+ * templates of the other files stay cached and the JIT stays warm. A run of
+ * an older version of the same file is cancelled first, and its report is
+ * never printed. Reports go to a {@link TMReportSink}, so {@code --format}
+ * applies as in a batch run.
+ */
+public class TMWatcher {
+
+    // editors often write a file in several steps; wait this long for the events to settle
+    private static final long SETTLE_MS = 50;
+
+    /** One submitted run of a file; cancel() reaches the machine once it has started. */
+    private static class Run {
+        volatile Runnable cancelMachine;
+        volatile boolean cancelled;
+        Future<?> future;
+
+        void cancel() {
+            cancelled = true;
+            Runnable c = cancelMachine;
+            if (c != null) c.run();
+            if (future != null) future.cancel(false);
+        }
+    }
+
+    private final TMSimulator.Options opts;
+    private final TMReportSink sink;
+    private final Set<Path> files = new LinkedHashSet<>();
+    private final Set<Path> anyTxtDirs = new LinkedHashSet<>();
+    private final Map<String, TMSimulator.CacheEntry> cache = new ConcurrentHashMap<>();
+    private final Map<Path, Run> running = new HashMap<>();
+    private final ExecutorService pool;
+
+    /**
+     * Watch the given files, writing their reports to sink. Directories in
+     * anyTxtDirs are also watched for machine files ({@code *.txt}) that do
+     * not exist yet.
+     */
+    public TMWatcher(TMSimulator.Options opts, File[] inputs, File[] anyTxtDirs, TMReportSink sink) {
+        this.opts = opts;
+        this.sink = sink;
+        for (File f : inputs) files.add(f.toPath().toAbsolutePath().normalize());
+        for (File d : anyTxtDirs) this.anyTxtDirs.add(d.toPath().toAbsolutePath().normalize());
+        this.pool = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r, "tm-watch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** As above, with run options given as simulator flags ({@code --max-steps=N} and so on). */
+    public TMWatcher(File[] inputs, File[] anyTxtDirs, TMReportSink sink, String... options) {
+        this(TMSimulator.parseOptions(options), inputs, anyTxtDirs, sink);
+    }
+
+    /** Run all inputs, then re-run changed files until the thread is interrupted. */
+    public void watch() throws IOException, InterruptedException {
+        try (WatchService ws = FileSystems.getDefault().newWatchService()) {
+            Set<Path> dirs = new LinkedHashSet<>(anyTxtDirs);
+            for (Path p : files) dirs.add(p.getParent());
+            for (Path d : dirs) d.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            for (Path p : files) submit(p, false);
+            System.err.println("Watching " + dirs.size() + " director" + (dirs.size() == 1 ? "y" : "ies") + " for changes");
+
+            while (true) {
+                WatchKey key = ws.take();
+                Thread.sleep(SETTLE_MS);
+                Set<Path> changed = new LinkedHashSet<>();
+                for (; key != null; key = ws.poll()) {
+                    Path dir = (Path) key.watchable();
+                    for (WatchEvent<?> ev : key.pollEvents()) {
+                        if (ev.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                        Path p = dir.resolve((Path) ev.context()).normalize();
+                        if (isWatched(p) && p.toFile().isFile()) changed.add(p);
+                    }
+                    key.reset();
+                }
+                for (Path p : changed) submit(p, true);
+            }
+        } finally {
+            for (Run run : running.values()) run.cancel();
+            pool.shutdown();
+        }
+    }
+
+    private boolean isWatched(Path p) {
+        if (files.contains(p)) return true;
+        String name = p.getFileName().toString();
+        return anyTxtDirs.contains(p.getParent()) && name.endsWith(".txt") && !name.startsWith(".");
+    }
+
+    /** Cancel any run of the file's previous version and start a new one. */
+    private void submit(Path p, boolean changed) {
+        Run previous = running.get(p);
+        if (previous != null) previous.cancel();
+        if (changed) {
+            // force a re-parse even if the edit kept the same lastModified
+            cache.remove(p.toString());
+            cache.remove(p + "#optimized");
+        }
+        Run run = new Run();
+        running.put(p, run);
+        File f = p.toFile();
+        run.future = pool.submit(() -> execute(f, run));
+    }
+
+    private void execute(File f, Run run) {
+        if (run.cancelled) return;
+        TMReport report;
+        try {
+            report = TMSimulator.runFile(f, cache, opts, cancel -> {
+                run.cancelMachine = cancel;
+                if (run.cancelled) cancel.run();
+            });
+        } catch (Exception e) {
+            // a stale run is dropped quietly; a step limit is an error like any other
+            if (run.cancelled) {
+                if (e instanceof CancellationException) System.err.println("Cancelled stale run of " + f + " (" + e.getMessage() + ")");
+                return;
+            }
+            System.err.println("Error processing " + f + ": " + e.getMessage());
+            report = TMReport.error(f.getName(), e);
+        }
+        if (run.cancelled) return;
+        try {
+            synchronized (sink) {
+                sink.write(report);
+            }
+        } catch (IOException e) {
+            System.err.println("Writing reports failed: " + e.getMessage());
+        }
+    }
+
+}